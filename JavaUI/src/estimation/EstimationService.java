@@ -0,0 +1,273 @@
+package estimation;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import model.ForestModel;
+
+/**
+ * Entry point for estimations from the UI: picks the backend (in-JVM forest or Python worker)
+ * and keeps recent results in an LRU cache with a time-to-live. The cache key is a SHA-256 of
+ * the canonical request (sorted keys, normalized numbers) plus the model version and the
+ * backend that serves it, so the presets and repeated history entries skip inference entirely.
+ * Optionally the cache is saved to disk on exit and read back on the next launch.
+ * <p>
+ * Identical requests that arrive while the first one is still being estimated share its
+ * future instead of starting a second inference (single flight).
+ */
+public class EstimationService implements Estimator {
+
+    public static final String CACHE_PATH = "resources/assets/cache/estimations.json";
+    public static final int CACHE_CAPACITY = 2_000;
+    public static final long CACHE_TTL_MS = 7L * 24 * 60 * 60 * 1000;
+
+    /** Request fields that are not features: the version is added separately, the rest is history metadata. */
+    private static final List<String> IGNORED_FIELDS = List.of("model", "result", "timestamp");
+
+    private static EstimationService instance;
+
+    private record CacheEntry(String result, long createdAt) {}
+
+    private final LinkedHashMap<String, CacheEntry> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    /** Estimations in progress by cache key; finished ones are removed right away. */
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private volatile String backend = "jvm";
+    private Path persistPath;
+
+    private EstimationService() {}
+
+    public static synchronized EstimationService getInstance() {
+        if (instance == null) instance = new EstimationService();
+        return instance;
+    }
+
+    /**
+     * "jvm" uses the exported forest when the version has one, "python" always uses the worker.
+     */
+    public void setBackend(String backend) {
+        this.backend = (backend == null) ? "jvm" : backend;
+    }
+
+    /**
+     * Estimator that will serve a request for this model version.
+     */
+    public Estimator selectEstimator(String model) {
+        if (!"python".equalsIgnoreCase(backend) && ForestEstimator.getInstance().isAvailable(model)) {
+            return ForestEstimator.getInstance();
+        }
+        return PythonWorkerClient.getInstance();
+    }
+
+    /**
+     * Keeps the cache between launches in {@code path}: reads it now and writes it on exit.
+     * Calling it again does nothing.
+     */
+    public synchronized void enablePersistence(Path path) {
+        if (persistPath != null) return;
+        persistPath = path;
+
+        loadingCache();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::savingCache, "estimation-cache-save"));
+    }
+
+    @Override
+    public CompletableFuture<String> estimate(JSONObject data) {
+        String version = ForestModel.normalizeVersion(data.optString("model", ""));
+        Estimator estimator = selectEstimator(version);
+        String key = cacheKey(data, version, backendName(estimator));
+
+        String cached = getCached(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses.incrementAndGet();
+
+        // одинаковые запросы, пока первый считается, ждут его результат
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return running.copy();
+        }
+
+        // лидер мог закончить между проверкой кэша и putIfAbsent
+        cached = getCached(key);
+        if (cached != null) {
+            inFlight.remove(key, flight);
+            flight.complete(cached);
+            return flight.copy();
+        }
+
+        CompletableFuture<String> estimation;
+        try {
+            estimation = estimator.estimate(data);
+        } catch (RuntimeException e) {
+            estimation = CompletableFuture.failedFuture(e);
+        }
+
+        estimation.whenComplete((result, error) -> {
+            // сначала кэш, потом снятие с полёта: новый запрос найдёт результат хотя бы в одном из них
+            if (error == null && result != null && !result.isBlank()) putCached(key, result);
+            inFlight.remove(key, flight);
+
+            if (error != null) flight.completeExceptionally(error);
+            else flight.complete(result);
+        });
+
+        // каждый ждущий получает свою копию, отмена одной не затрагивает остальных
+        return flight.copy();
+    }
+
+    private synchronized String getCached(String key) {
+        CacheEntry entry = cache.get(key);
+        if (entry == null) return null;
+
+        if (System.currentTimeMillis() - entry.createdAt() > CACHE_TTL_MS) {
+            cache.remove(key);
+            return null;
+        }
+        return entry.result();
+    }
+
+    private synchronized void putCached(String key, String result) {
+        cache.put(key, new CacheEntry(result, System.currentTimeMillis()));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Misses that joined an identical estimation already in progress instead of starting their own.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public synchronized int getCacheSize() {
+        return cache.size();
+    }
+
+    public synchronized void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * SHA-256 (hex) of the canonical request, the model version and the backend. Two requests
+     * that differ only in key order, number formatting (4 / 4.0) or history metadata get the
+     * same key; text values are kept exactly, as {@link model.FeatureEncoder} matches categories.
+     */
+    public static String cacheKey(JSONObject data, String version, String backend) {
+        StringBuilder canonical = new StringBuilder();
+        for (String name : new TreeSet<>(data.keySet())) {
+            if (IGNORED_FIELDS.contains(name)) continue;
+            canonical.append(name).append('=').append(canonicalValue(data.opt(name))).append('\n');
+        }
+        canonical.append("model=").append(version).append('\n');
+        canonical.append("backend=").append(backend);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String canonicalValue(Object value) {
+        if (value == null || value == JSONObject.NULL) return "null";
+        if (value instanceof Number number) {
+            double d = number.doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) return "null";
+            return new BigDecimal(number.toString()).stripTrailingZeros().toPlainString();
+        }
+        return value.toString();
+    }
+
+    private static String backendName(Estimator estimator) {
+        return (estimator instanceof ForestEstimator) ? "jvm" : "python";
+    }
+
+    private void loadingCache() {
+        try {
+            if (!Files.exists(persistPath)) return;
+
+            JSONArray entries = new JSONArray(Files.readString(persistPath, StandardCharsets.UTF_8));
+            long now = System.currentTimeMillis();
+
+            synchronized (this) {
+                // записи сохранены от старых к новым, так порядок LRU восстанавливается
+                for (int i = 0; i < entries.length(); i++) {
+                    JSONObject entry = entries.getJSONObject(i);
+                    long createdAt = entry.getLong("createdAt");
+                    if (now - createdAt > CACHE_TTL_MS) continue;
+
+                    cache.put(entry.getString("key"), new CacheEntry(entry.getString("result"), createdAt));
+                }
+            }
+        } catch (Exception e) {
+            // повреждённый кэш не мешает работе, просто начинаем с пустого
+            e.printStackTrace();
+        }
+    }
+
+    private void savingCache() {
+        List<JSONObject> entries = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, CacheEntry> entry : cache.entrySet()) {
+                JSONObject object = new JSONObject();
+                object.put("key", entry.getKey());
+                object.put("result", entry.getValue().result());
+                object.put("createdAt", entry.getValue().createdAt());
+                entries.add(object);
+            }
+        }
+
+        try {
+            Files.createDirectories(persistPath.getParent());
+            Path temp = persistPath.resolveSibling(persistPath.getFileName() + ".tmp");
+            Files.writeString(temp, new JSONArray(entries).toString(), StandardCharsets.UTF_8);
+            Files.move(temp, persistPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
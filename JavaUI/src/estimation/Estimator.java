@@ -0,0 +1,17 @@
+package estimation;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.json.JSONObject;
+
+/**
+ * Backend that turns a PC configuration into an estimation label ("Плохая" / "Нормальная" / "Хорошая").
+ */
+public interface Estimator {
+
+    /**
+     * Evaluates one configuration (the JSON built by {@code WindowMain.parsingData}).
+     * The {@code model} field of the request selects the model version.
+     */
+    CompletableFuture<String> estimate(JSONObject data);
+}
@@ -0,0 +1,216 @@
+package estimation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.JSONObject;
+
+import model.CompiledForest;
+import model.ForestBatch;
+import model.ForestCompiler;
+import model.ForestModel;
+import model.ForestPredictor;
+import model.MappedForestModel;
+
+/**
+ * In-JVM estimator, no Python process involved. The {@link #activate active} version is loaded
+ * from its exported {@code .tamodel} into a {@link ForestModel}, compiled to bytecode by
+ * {@link ForestCompiler} when possible (falling back to the array walker) and scored in blocks
+ * by {@link ForestBatch}. Any other version is memory-mapped from its
+ * {@code model_RF_<version>.taqm} by {@link MappedForestModel} when it has been converted:
+ * opening one costs almost nothing and several stay resident with little heap. A version without
+ * a {@code .taqm} is loaded into the heap uncompiled.
+ * <p>
+ * Activating a version releases the heap models (and compiled classes) of all the others; their
+ * mapped models are kept.
+ */
+public class ForestEstimator implements Estimator {
+
+    private static ForestEstimator instance;
+
+    private final Map<String, ForestPredictor> models = new ConcurrentHashMap<>();
+    private final Map<String, CompiledForest> compiledModels = new ConcurrentHashMap<>();
+
+    /** Version served by the compiled heap model. */
+    private volatile String activeVersion;
+
+    /** Stop walking trees once the majority is decided (same result, fewer trees). */
+    private volatile boolean earlyExit = false;
+
+    /** Feature row, scores and early-exit result of one thread, reused by every estimation. */
+    private static final class Buffers {
+        double[] row = new double[0];
+        double[] scores = new double[0];
+        final ForestModel.Prediction prediction = new ForestModel.Prediction();
+    }
+
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    private ForestEstimator() {}
+
+    public static synchronized ForestEstimator getInstance() {
+        if (instance == null) instance = new ForestEstimator();
+        return instance;
+    }
+
+    public void setEarlyExit(boolean earlyExit) {
+        this.earlyExit = earlyExit;
+    }
+
+    /**
+     * True if the version has been exported with {@code exportModel.py} (or converted to {@code .taqm}).
+     */
+    public boolean isAvailable(String model) {
+        try {
+            return models.containsKey(ForestModel.normalizeVersion(model))
+                || MappedForestModel.modelFile(model).isFile() || ForestModel.modelFile(model).isFile();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public ForestPredictor getModel(String model) throws IOException {
+        String version = ForestModel.normalizeVersion(model);
+
+        ForestPredictor loaded = models.get(version);
+        if (loaded != null) return loaded;
+
+        synchronized (this) {
+            loaded = models.get(version);
+            if (loaded == null) {
+                loaded = load(version);
+                models.put(version, loaded);
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * Makes {@code model} the version served by the compiled heap model (loaded from the
+     * {@code .tamodel}, or mapped if there is only a {@code .taqm}) and releases the heap models of
+     * the other versions. Call it off the UI thread.
+     */
+    public synchronized void activate(String model) throws IOException {
+        String version = ForestModel.normalizeVersion(model);
+        activeVersion = version;
+
+        ForestPredictor loaded = models.get(version);
+        if (loaded instanceof ForestModel forest) {
+            if (!compiledModels.containsKey(version)) compile(forest);
+        } else if (loaded == null || ForestModel.modelFile(version).isFile()) {
+            // была отображённой, пока не стала активной
+            models.put(version, load(version));
+        }
+        evicting();
+    }
+
+    /**
+     * Drops the heap models and compiled classes of the versions that are not active; the
+     * classes are hidden and unloaded with them. Mapped models stay, they take almost no heap.
+     */
+    private void evicting() {
+        compiledModels.keySet().removeIf(version -> !version.equals(activeVersion));
+        models.entrySet().removeIf(entry ->
+            !entry.getKey().equals(activeVersion) && entry.getValue() instanceof ForestModel);
+    }
+
+    /**
+     * The active version gets the compiled heap model, so the compiled and the batch paths are
+     * used; any other version is mapped from its {@code .taqm} if it has one.
+     */
+    private ForestPredictor load(String version) throws IOException {
+        File forestFile = ForestModel.modelFile(version);
+        File mappedFile = MappedForestModel.modelFile(version);
+        boolean active = version.equals(activeVersion);
+        if (mappedFile.isFile() && (!active || !forestFile.isFile())) return MappedForestModel.open(mappedFile.toPath());
+
+        ForestModel forest = ForestModel.load(forestFile.toPath());
+        if (active) compile(forest);
+        return forest;
+    }
+
+    private void compile(ForestModel forest) {
+        try {
+            compiledModels.put(forest.version, ForestCompiler.compile(forest));
+        } catch (RuntimeException | LinkageError e) {
+            // модель остаётся на интерпретаторе массивов
+            System.out.println("Не удалось скомпилировать модель " + forest.version + ": " + e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> estimate(JSONObject data) {
+        try {
+            ForestPredictor forest = getModel(data.optString("model", ""));
+            CompiledForest compiled = compiledModels.get(forest.version());
+
+            Buffers buffer = buffersFor(forest);
+            double[] row = buffer.row;
+            double[] scores = buffer.scores;
+            forest.encoder().encode(data, row);
+
+            int classIndex;
+            if (earlyExit) {
+                classIndex = forest.predictEarlyExit(row, scores, buffer.prediction).classIndex;
+            } else if (compiled != null) {
+                classIndex = compiled.predict(row, scores);
+            } else {
+                classIndex = forest.predict(row, scores);
+            }
+
+            return CompletableFuture.completedFuture(forest.label(classIndex));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Buffers of the calling thread sized for {@code forest}; they are replaced only when a
+     * version with another number of features or classes is used.
+     */
+    private Buffers buffersFor(ForestPredictor forest) {
+        Buffers buffer = buffers.get();
+        int featureCount = forest.encoder().featureCount();
+        // скомпилированный лес считает классы по длине scores
+        if (buffer.row.length != featureCount) buffer.row = new double[featureCount];
+        if (buffer.scores.length != forest.classCount()) buffer.scores = new double[forest.classCount()];
+        return buffer;
+    }
+
+    /**
+     * Scores a large list of configurations with one model version in columnar blocks
+     * of {@link ForestBatch#BLOCK_ROWS} rows (Vector API when available).
+     */
+    public List<String> estimateAll(String model, List<JSONObject> configurations) throws IOException {
+        ForestPredictor predictor = getModel(model);
+
+        double[][] rows = new double[configurations.size()][];
+        for (int i = 0; i < rows.length; i++) rows[i] = predictor.encoder().encode(configurations.get(i));
+
+        List<String> labels = new ArrayList<>(rows.length);
+        if (!(predictor instanceof ForestModel forest)) {
+            // квантованная модель читается из файла построчно
+            double[] scores = new double[predictor.classCount()];
+            for (double[] row : rows) labels.add(predictor.label(predictor.predict(row, scores)));
+            return labels;
+        }
+
+        int featureCount = forest.featureCount();
+        int[] out = new int[ForestBatch.BLOCK_ROWS];
+
+        for (int from = 0; from < rows.length; from += ForestBatch.BLOCK_ROWS) {
+            int count = Math.min(ForestBatch.BLOCK_ROWS, rows.length - from);
+            float[] block = ForestBatch.toColumns(rows, from, count, featureCount);
+
+            ForestBatch.predict(ForestBatch.kernel(), forest, block, count, out);
+            for (int r = 0; r < count; r++) labels.add(forest.label(out[r]));
+        }
+
+        return labels;
+    }
+}
@@ -0,0 +1,122 @@
+package estimation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import model.ForestModel;
+import model.MappedForestModel;
+import utils.ProjectPaths;
+
+/**
+ * Model versions found under {@code PythonAI/models/} and the one currently used for estimation.
+ * {@link #select} loads the version on a background thread and only then swaps it in atomically:
+ * requests that already took the old version finish on it, the next request gets the new one
+ * without waiting for a load.
+ */
+public class ModelRegistry {
+
+    private static ModelRegistry instance;
+
+    /** Version that requests use now. */
+    private final AtomicReference<String> active = new AtomicReference<>();
+    /** Version asked for last; a slower earlier load must not overwrite it. */
+    private final AtomicReference<String> requested = new AtomicReference<>();
+
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "model-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ModelRegistry() {}
+
+    public static synchronized ModelRegistry getInstance() {
+        if (instance == null) instance = new ModelRegistry();
+        return instance;
+    }
+
+    /**
+     * Version directories that contain a trained or exported model, sorted by name.
+     */
+    public List<String> versions() {
+        List<String> versions = new ArrayList<>();
+        try {
+            File[] dirs = ProjectPaths.modelsDir().listFiles(File::isDirectory);
+            if (dirs == null) return versions;
+
+            for (File dir : dirs) {
+                String version = dir.getName();
+                if (new File(dir, "model_RF_" + version + ".joblib").isFile()
+                    || ForestModel.modelFile(version).isFile()
+                    || MappedForestModel.modelFile(version).isFile()) {
+                    versions.add(version);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        versions.sort(null);
+        return versions;
+    }
+
+    /**
+     * Version to put into the next request: the last one that finished loading, or the
+     * requested one while nothing has been loaded yet.
+     */
+    public String activeVersion() {
+        String version = active.get();
+        if (version == null) version = requested.get();
+        return ForestModel.normalizeVersion(version);
+    }
+
+    /**
+     * Starts loading a version in the background and makes it active once it is ready.
+     * Selecting the active version again does nothing.
+     */
+    public CompletableFuture<String> select(String model) {
+        String version = ForestModel.normalizeVersion(model);
+        requested.set(version);
+        if (version.equals(active.get())) return CompletableFuture.completedFuture(version);
+
+        return CompletableFuture.supplyAsync(() -> {
+            preload(version);
+
+            // активируем, только если за время загрузки не выбрали другую версию
+            if (version.equals(requested.get())) {
+                active.set(version);
+                System.out.println("Активная модель: " + version);
+            }
+            return version;
+        }, loader);
+    }
+
+    private void preload(String version) {
+        ForestEstimator forest = ForestEstimator.getInstance();
+        if (forest.isAvailable(version)) {
+            try {
+                // компилируется только выбранная версия, кучевые модели остальных освобождаются
+                forest.activate(version);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // версию будет считать Python — процесс запускается (если ещё не запущен) и загружает
+        // её сейчас; запущенный ради другой версии процесс тоже получает новую
+        PythonWorkerClient python = PythonWorkerClient.getInstance();
+        if (EstimationService.getInstance().selectEstimator(version) == python || python.isRunning()) {
+            try {
+                python.load(version).join();
+            } catch (RuntimeException e) {
+                System.out.println("Python не смог загрузить модель " + version + ": " + e);
+            }
+        }
+    }
+}
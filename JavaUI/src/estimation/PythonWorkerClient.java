@@ -0,0 +1,392 @@
+package estimation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import utils.ProjectPaths;
+
+/**
+ * Client for the long-lived Python inference worker ({@code predictWorker.py}).
+ * The worker is started once, keeps the model in memory and answers newline-delimited
+ * JSON requests over stdin/stdout. Responses are matched to callers by request id.
+ * A crashed worker is restarted automatically; a hung one is detected by periodic pings.
+ * Estimations that arrive while the worker is busy are micro-batched into one
+ * {@code model.predict} call.
+ */
+public class PythonWorkerClient implements Estimator {
+
+    private static final String WORKER_SCRIPT = "predictWorker.py";
+    private static final String[] PYTHON_COMMAND = {"py", "-3"};
+
+    public static final long DEFAULT_BATCH_WINDOW_MICROS = 2_000;
+    public static final int DEFAULT_BATCH_MAX_ITEMS = 64;
+
+    private static final long RESTART_DELAY_MS = 1_000;
+    private static final long HEALTH_CHECK_PERIOD_S = 30;
+    private static final long HEALTH_CHECK_TIMEOUT_MS = 10_000;
+
+    private static PythonWorkerClient instance;
+
+    private final AtomicLong requestIds = new AtomicLong();
+    /** Request waiting for its response, with the process it was written to. */
+    private record Pending(Process process, CompletableFuture<JSONObject> future) {}
+
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "python-worker-health");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Configuration waiting to be sent in the next batch. */
+    private record Queued(JSONObject data, CompletableFuture<String> future) {}
+
+    private final LinkedBlockingQueue<Queued> batchQueue = new LinkedBlockingQueue<>();
+    private final AtomicInteger batchesInFlight = new AtomicInteger();
+    private volatile long batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_BATCH_WINDOW_MICROS);
+    private volatile int batchMaxItems = DEFAULT_BATCH_MAX_ITEMS;
+
+    private Process process;
+    private BufferedWriter writer;
+    private volatile boolean shuttingDown = false;
+
+    private PythonWorkerClient() {
+        healthChecker.scheduleWithFixedDelay(this::checkHealth,
+            HEALTH_CHECK_PERIOD_S, HEALTH_CHECK_PERIOD_S, TimeUnit.SECONDS);
+
+        Thread batcher = new Thread(this::batchLoop, "python-worker-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "python-worker-shutdown"));
+    }
+
+    public static synchronized PythonWorkerClient getInstance() {
+        if (instance == null) instance = new PythonWorkerClient();
+        return instance;
+    }
+
+    /**
+     * Starts the worker in the background so the interpreter and the model are warm
+     * by the time the first request arrives. Does nothing if it is already running.
+     * Every started process, a restarted one included, loads the active model version first.
+     */
+    public void startAsync() {
+        Thread thread = new Thread(() -> {
+            try {
+                ensureRunning();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "python-worker-start");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues one configuration (the JSON built by {@code WindowMain.parsingData}) for evaluation.
+     * Requests arriving together are sent as one batch, see {@link #setBatchWindow}.
+     *
+     * @return future completed with the estimation label, e.g. "Хорошая"
+     */
+    @Override
+    public CompletableFuture<String> estimate(JSONObject data) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        batchQueue.add(new Queued(data, future));
+        return future;
+    }
+
+    /**
+     * Limits of a batch: how long to keep collecting and how many configurations at most.
+     * The window is only waited for while an earlier batch is still being predicted; an idle
+     * worker gets a request at once, so a single interactive estimation is never delayed.
+     */
+    public void setBatchWindow(long windowMicros, int maxItems) {
+        batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, windowMicros));
+        batchMaxItems = Math.max(1, maxItems);
+    }
+
+    private void batchLoop() {
+        List<Queued> batch = new ArrayList<>();
+
+        while (!shuttingDown) {
+            try {
+                batch.add(batchQueue.take());
+                int maxItems = batchMaxItems;
+                batchQueue.drainTo(batch, maxItems - batch.size());
+
+                // воркер занят прошлым пакетом — всё равно ждать, заодно добираем пакет
+                if (batchesInFlight.get() > 0) {
+                    long deadline = System.nanoTime() + batchWindowNanos;
+                    while (batch.size() < maxItems) {
+                        long left = deadline - System.nanoTime();
+                        if (left <= 0) break;
+
+                        Queued next = batchQueue.poll(left, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                        batch.add(next);
+                        batchQueue.drainTo(batch, maxItems - batch.size());
+                    }
+                }
+
+                sendBatch(List.copyOf(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                batch.forEach(queued -> queued.future().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void sendBatch(List<Queued> batch) {
+        JSONObject request = new JSONObject();
+        if (batch.size() == 1) {
+            request.put("type", "predict");
+            request.put("data", batch.get(0).data());
+        } else {
+            JSONArray items = new JSONArray();
+            batch.forEach(queued -> items.put(queued.data()));
+            request.put("type", "batch");
+            request.put("items", items);
+        }
+
+        batchesInFlight.incrementAndGet();
+        send(request).whenComplete((response, error) -> {
+            batchesInFlight.decrementAndGet();
+
+            if (error != null) {
+                batch.forEach(queued -> queued.future().completeExceptionally(error));
+                return;
+            }
+
+            try {
+                completing(batch, response);
+            } catch (RuntimeException e) {
+                // ответ не того вида (нет result, не та длина, не строка) — никто не должен
+                // ждать вечно
+                IOException malformed = new IOException("Malformed Python worker response: " + e.getMessage(), e);
+                batch.forEach(queued -> queued.future().completeExceptionally(malformed));
+            }
+        });
+    }
+
+    private void completing(List<Queued> batch, JSONObject response) {
+        if (batch.size() == 1) {
+            batch.get(0).future().complete(response.getString("result"));
+            return;
+        }
+
+        // ответы пакета идут в том же порядке, что и запросы
+        JSONArray results = response.getJSONArray("result");
+        if (results.length() != batch.size()) {
+            throw new IllegalStateException(results.length() + " results for " + batch.size() + " items");
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            if (result.optBoolean("ok", false)) {
+                batch.get(i).future().complete(result.getString("result"));
+            } else {
+                batch.get(i).future().completeExceptionally(
+                    new IOException(result.optString("error", "Python worker error")));
+            }
+        }
+    }
+
+    /**
+     * Asks the worker to load a model version into memory ahead of the first prediction.
+     */
+    public CompletableFuture<String> load(String model) {
+        JSONObject request = new JSONObject();
+        request.put("type", "load");
+        request.put("model", model);
+
+        return send(request).thenApply(response -> response.getString("result"));
+    }
+
+    /**
+     * Health check: returns true if the worker answers a ping within the timeout.
+     */
+    public boolean ping(long timeoutMs) {
+        JSONObject request = new JSONObject();
+        request.put("type", "ping");
+
+        try {
+            JSONObject response = send(request).get(timeoutMs, TimeUnit.MILLISECONDS);
+            return "pong".equals(response.optString("result"));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return process != null && process.isAlive();
+    }
+
+    private CompletableFuture<JSONObject> send(JSONObject request) {
+        long id = requestIds.incrementAndGet();
+        request.put("id", id);
+
+        CompletableFuture<JSONObject> future = new CompletableFuture<>();
+
+        try {
+            synchronized (this) {
+                ensureRunning();
+                // регистрируем до записи: ответ не может прийти раньше запроса
+                pending.put(id, new Pending(process, future));
+                writer.write(request.toString());
+                writer.write("\n");
+                writer.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private synchronized void ensureRunning() throws IOException {
+        if (shuttingDown) throw new IOException("Python worker is shutting down");
+        if (isRunning()) return;
+
+        File helpersDir = ProjectPaths.helpersDir();
+        File script = new File(helpersDir, WORKER_SCRIPT);
+
+        String[] command = new String[PYTHON_COMMAND.length + 1];
+        System.arraycopy(PYTHON_COMMAND, 0, command, 0, PYTHON_COMMAND.length);
+        command[PYTHON_COMMAND.length] = script.getCanonicalPath();
+
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.directory(helpersDir);
+        // stderr отдельно: предупреждения sklearn/pandas не должны попадать в протокол
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+
+        Process started = pb.start();
+        process = started;
+        writer = new BufferedWriter(new OutputStreamWriter(started.getOutputStream(), StandardCharsets.UTF_8));
+
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(started.getInputStream(), StandardCharsets.UTF_8)
+        );
+
+        Thread readerThread = new Thread(() -> readLoop(started, reader), "python-worker-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        // новый процесс (первый запуск или перезапуск после сбоя) пуст — сразу грузим модель,
+        // запрос встаёт в очередь раньше того, ради которого процесс запустили
+        warming(ModelRegistry.getInstance().activeVersion());
+    }
+
+    private void warming(String version) {
+        load(version).exceptionally(e -> {
+            System.out.println("Python не смог загрузить модель " + version + ": " + e);
+            return null;
+        });
+    }
+
+    private void readLoop(Process owner, BufferedReader reader) {
+        try (reader) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                dispatch(line);
+            }
+        } catch (IOException e) {
+            if (!shuttingDown) e.printStackTrace();
+        }
+
+        onWorkerExit(owner);
+    }
+
+    private void dispatch(String line) {
+        JSONObject response;
+        try {
+            response = new JSONObject(line);
+        } catch (Exception e) {
+            System.out.println("Python worker: " + line);
+            return;
+        }
+
+        Pending request = pending.remove(response.optLong("id", -1));
+        if (request == null) return;
+
+        CompletableFuture<JSONObject> future = request.future();
+        if (response.optBoolean("ok", false)) future.complete(response);
+        else future.completeExceptionally(new IOException(response.optString("error", "Python worker error")));
+    }
+
+    private void onWorkerExit(Process owner) {
+        synchronized (this) {
+            if (process != owner) return;
+            process = null;
+            writer = null;
+        }
+
+        // Всё, что ждало ответа от упавшего процесса, завершаем ошибкой. Запросы, уже
+        // отправленные перезапущенному процессу, не трогаем
+        IOException error = new IOException("Python worker exited");
+        pending.entrySet().removeIf(entry -> {
+            if (entry.getValue().process() != owner) return false;
+            entry.getValue().future().completeExceptionally(error);
+            return true;
+        });
+
+        if (shuttingDown) return;
+
+        healthChecker.schedule(() -> {
+            try {
+                ensureRunning();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, RESTART_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void checkHealth() {
+        Process current;
+        synchronized (this) {
+            current = process;
+        }
+        if (current == null || shuttingDown) return;
+
+        if (!ping(HEALTH_CHECK_TIMEOUT_MS)) {
+            System.out.println("Python worker не отвечает — перезапуск");
+            current.destroyForcibly();
+        }
+    }
+
+    /**
+     * Stops the worker process. Called automatically on JVM shutdown.
+     */
+    public void shutdown() {
+        shuttingDown = true;
+        healthChecker.shutdownNow();
+
+        synchronized (this) {
+            if (process != null) process.destroy();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Closed month of history in a compressed columnar file ({@code history-YYYY-MM.tahz}).
+ * <p>
+ * The file starts with an uncompressed block of summaries (timestamp and result of every entry),
+ * so the history list is drawn without decompressing anything. The entries follow as a GZIP
+ * stream, one column per field: the distinct strings of a column are stored once in its
+ * dictionary and the rows refer to them by number, which is what makes repeated CPU, GPU and
+ * OS names cheap. The body is decoded only when an entry is opened and kept while memory allows;
+ * a full pass ({@link #forEach}) builds the entries one at a time and does not fill that cache.
+ * <p>
+ * Layout: {@code "TAHA", version, count, count × (long timestamp, result)}, then GZIP of
+ * {@code keyCount, key names, per key: dictionary, count × (tag, value)}.
+ */
+final class ArchivedSegment implements HistorySegment {
+
+    public static final String FILE_SUFFIX = ".tahz";
+
+    private static final int MAGIC = 0x54414841; // "TAHA"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte ABSENT = 0;
+    private static final byte NULL = 1;
+    private static final byte STRING = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+    private static final byte RAW = 7;
+
+    private final YearMonth month;
+    private final Path path;
+    private final long[] timestamps;
+    private final String[] results;
+
+    private SoftReference<JSONObject[]> decoded = new SoftReference<>(null);
+
+    private ArchivedSegment(YearMonth month, Path path, long[] timestamps, String[] results) {
+        this.month = month;
+        this.path = path;
+        this.timestamps = timestamps;
+        this.results = results;
+    }
+
+    /**
+     * Reads the summaries only; the entries stay compressed until they are needed.
+     */
+    static ArchivedSegment open(YearMonth month, Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a history archive: " + path);
+            }
+
+            int count = in.readInt();
+            long[] timestamps = new long[count];
+            String[] results = new String[count];
+            for (int i = 0; i < count; i++) {
+                timestamps[i] = in.readLong();
+                results[i] = readText(in);
+            }
+            return new ArchivedSegment(month, path, timestamps, results);
+        }
+    }
+
+    /**
+     * Writes the entries of a month as an archive. The file is replaced atomically, so an
+     * interrupted archiving leaves either the old state or the complete archive.
+     */
+    static ArchivedSegment write(YearMonth month, Path path, List<JSONObject> entries) throws IOException {
+        int count = entries.size();
+        long[] timestamps = new long[count];
+        String[] results = new String[count];
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            DataOutputStream header = new DataOutputStream(file);
+            header.writeInt(MAGIC);
+            header.writeInt(FORMAT_VERSION);
+            header.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                JSONObject entry = entries.get(i);
+                timestamps[i] = HistoryIndex.parseTimestamp(entry.optString("timestamp", null));
+                results[i] = entry.optString("result", "");
+                header.writeLong(timestamps[i]);
+                writeText(header, results[i]);
+            }
+            header.flush();
+
+            GZIPOutputStream gzip = new GZIPOutputStream(file, 1 << 16);
+            DataOutputStream body = new DataOutputStream(new BufferedOutputStream(gzip, 1 << 16));
+            writingColumns(body, entries);
+            body.flush();
+            gzip.finish();
+        }
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return new ArchivedSegment(month, path, timestamps, results);
+    }
+
+    @Override
+    public YearMonth month() {
+        return month;
+    }
+
+    @Override
+    public int size() {
+        return timestamps.length;
+    }
+
+    @Override
+    public JSONObject get(int position) throws IOException {
+        if (position < 0 || position >= timestamps.length) {
+            throw new IndexOutOfBoundsException("History entry " + position + " of " + timestamps.length);
+        }
+        // отдаём копию: кэш архива не должен меняться снаружи
+        return new JSONObject(entries()[position].toString());
+    }
+
+    @Override
+    public HistoryIndex.Summary summary(int position) {
+        return new HistoryIndex.Summary(timestamps[position], results[position]);
+    }
+
+    @Override
+    public void forEach(Consumer<JSONObject> action) throws IOException {
+        JSONObject[] cached = decoded.get();
+        if (cached != null) {
+            for (JSONObject entry : cached) action.accept(new JSONObject(entry.toString()));
+            return;
+        }
+        // обход всего месяца не кладёт его в кэш: записи собираются по одной из столбцов
+        // и сразу отдаются, поэтому копировать их не нужно
+        Column[] columns = readingColumns();
+        for (int i = 0; i < timestamps.length; i++) action.accept(assembling(columns, i));
+    }
+
+    @Override
+    public void close() {
+        decoded.clear();
+    }
+
+    @Override
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    private synchronized JSONObject[] entries() throws IOException {
+        JSONObject[] entries = decoded.get();
+        if (entries == null) {
+            Column[] columns = readingColumns();
+            entries = new JSONObject[timestamps.length];
+            for (int i = 0; i < entries.length; i++) entries[i] = assembling(columns, i);
+            decoded = new SoftReference<>(entries);
+        }
+        return entries;
+    }
+
+    private static void writingColumns(DataOutputStream out, List<JSONObject> entries) throws IOException {
+        Set<String> keys = new LinkedHashSet<>();
+        for (JSONObject entry : entries) keys.addAll(entry.keySet());
+
+        out.writeInt(keys.size());
+        for (String key : keys) writeText(out, key);
+
+        for (String key : keys) {
+            // словарь строк столбца: повторяющиеся значения хранятся один раз
+            Map<String, Integer> dictionary = new HashMap<>();
+            List<String> words = new ArrayList<>();
+            for (JSONObject entry : entries) {
+                if (entry.opt(key) instanceof String text && !dictionary.containsKey(text)) {
+                    dictionary.put(text, words.size());
+                    words.add(text);
+                }
+            }
+
+            out.writeInt(words.size());
+            for (String word : words) writeText(out, word);
+
+            for (JSONObject entry : entries) {
+                Object value = entry.opt(key);
+                if (value == null) {
+                    out.writeByte(ABSENT);
+                } else if (value == JSONObject.NULL) {
+                    out.writeByte(NULL);
+                } else if (value instanceof String text) {
+                    out.writeByte(STRING);
+                    out.writeInt(dictionary.get(text));
+                } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                    out.writeByte(LONG);
+                    out.writeLong(((Number) value).longValue());
+                } else if (value instanceof Double || value instanceof Float) {
+                    out.writeByte(DOUBLE);
+                    out.writeDouble(((Number) value).doubleValue());
+                } else if (value instanceof Boolean flag) {
+                    out.writeByte(flag ? TRUE : FALSE);
+                } else {
+                    // вложенные объекты, массивы и большие числа — как JSON
+                    out.writeByte(RAW);
+                    writeText(out, new JSONArray().put(value).toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * One decoded column: per row a tag and, depending on it, a dictionary number, a long,
+     * the bits of a double or a raw JSON text.
+     */
+    private record Column(String key, String[] words, byte[] tags, long[] values, String[] raw) {}
+
+    private Column[] readingColumns() throws IOException {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path))) {
+            DataInputStream header = new DataInputStream(file);
+            header.readInt();
+            header.readInt();
+            int count = header.readInt();
+            for (int i = 0; i < count; i++) {
+                header.readLong();
+                readText(header);
+            }
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(file, 1 << 16), 1 << 16));
+            String[] keys = new String[in.readInt()];
+            for (int k = 0; k < keys.length; k++) keys[k] = readText(in);
+
+            Column[] columns = new Column[keys.length];
+            for (int k = 0; k < keys.length; k++) {
+                String[] words = new String[in.readInt()];
+                for (int w = 0; w < words.length; w++) words[w] = readText(in);
+
+                byte[] tags = new byte[count];
+                long[] values = new long[count];
+                String[] raw = null;
+                for (int i = 0; i < count; i++) {
+                    byte tag = in.readByte();
+                    tags[i] = tag;
+                    switch (tag) {
+                        case ABSENT, NULL, TRUE, FALSE -> {}
+                        case STRING -> values[i] = in.readInt();
+                        case LONG -> values[i] = in.readLong();
+                        case DOUBLE -> values[i] = Double.doubleToRawLongBits(in.readDouble());
+                        case RAW -> {
+                            if (raw == null) raw = new String[count];
+                            raw[i] = readText(in);
+                        }
+                        default -> throw new IOException("Damaged history archive: " + path);
+                    }
+                }
+                columns[k] = new Column(keys[k], words, tags, values, raw);
+            }
+            return columns;
+        }
+    }
+
+    private static JSONObject assembling(Column[] columns, int row) {
+        JSONObject entry = new JSONObject();
+        for (Column column : columns) {
+            long value = column.values()[row];
+            switch (column.tags()[row]) {
+                case NULL -> entry.put(column.key(), JSONObject.NULL);
+                case STRING -> entry.put(column.key(), column.words()[(int) value]);
+                case LONG -> {
+                    if (value == (int) value) entry.put(column.key(), (int) value);
+                    else entry.put(column.key(), value);
+                }
+                case DOUBLE -> entry.put(column.key(), Double.longBitsToDouble(value));
+                case TRUE -> entry.put(column.key(), true);
+                case FALSE -> entry.put(column.key(), false);
+                case RAW -> entry.put(column.key(), new JSONArray(column.raw()[row]).get(0));
+                default -> {}
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Length-prefixed UTF-8, unlike writeUTF not limited to 64 KB.
+     */
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,253 @@
+package history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.json.JSONObject;
+
+/**
+ * Configurations of the evaluated machines, each stored once under a hash of its content
+ * ({@code configurations.jsonl}, one {@code {"id":…,"config":{…}}} per line). History records
+ * keep only the evaluation itself (timestamp, model version, result) and the configuration id,
+ * so evaluating the same machine again adds a short line instead of a copy of all its fields.
+ * <p>
+ * The file is append-only and written under the history lock. Ids written by another instance
+ * are read from the file on the first miss. Two different configurations whose hashes share the
+ * id get distinct ids ({@code <hash>-1}, {@code <hash>-2}…): a hit is compared with the stored
+ * configuration before it is reused.
+ * <p>
+ * A line that cannot be parsed is logged and dropped, and the records that point to it cannot
+ * be expanded: {@link #expanding} returns null for them and the history skips them.
+ */
+final class ConfigurationStore {
+
+    /** Fields of the evaluation itself; everything else describes the machine. */
+    static final List<String> EVENT_FIELDS = List.of("timestamp", "model", "result");
+
+    /** Hex digits of the SHA-256 kept as the id. */
+    private static final int ID_LENGTH = 16;
+
+    private final FileChannel channel;
+    private final Map<String, JSONObject> configurations = new HashMap<>();
+    /** Ids already reported as missing, to log each of them once. */
+    private final Set<String> reportedMissing = new HashSet<>();
+    /** End of the last complete line read. */
+    private long readOffset;
+
+    private ConfigurationStore(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens (or creates) the file and reads it. Call with the history lock held.
+     */
+    static ConfigurationStore open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        ConfigurationStore store = new ConfigurationStore(channel);
+        try {
+            store.reading();
+            store.cuttingTornTail();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * The record to store for an entry: its event fields and the id of its configuration, which
+     * is written first if it is new. A record that is already compact is returned as it is.
+     * Call with the history lock held.
+     */
+    synchronized JSONObject compacting(JSONObject entry) throws IOException {
+        JSONObject record = new JSONObject();
+        JSONObject configuration = new JSONObject();
+        for (String key : entry.keySet()) {
+            if (HistoryStore.CONFIG_FIELD.equals(key)) continue;
+
+            if (EVENT_FIELDS.contains(key)) record.put(key, entry.get(key));
+            else configuration.put(key, entry.get(key));
+        }
+
+        if (configuration.isEmpty() && entry.has(HistoryStore.CONFIG_FIELD)) return entry;
+
+        String canonical = canonical(configuration);
+        String hash = hashOf(canonical);
+        String id = hash;
+        for (int collision = 1; ; collision++) {
+            JSONObject stored = configurations.get(id);
+            if (stored == null) {
+                // другой экземпляр мог уже записать такую же конфигурацию
+                reading();
+                stored = configurations.get(id);
+            }
+            if (stored == null) {
+                writing(id, configuration);
+                break;
+            }
+            if (canonical(stored).equals(canonical)) break;
+
+            // другая машина с тем же началом хеша
+            id = hash + "-" + collision;
+        }
+
+        record.put(HistoryStore.CONFIG_FIELD, id);
+        return record;
+    }
+
+    /**
+     * The full entry of a stored record: its configuration with the event fields on top. A
+     * record written before configurations were split out is returned as it is. Returns null
+     * if the configuration of the record is missing (its line was corrupted): the caller skips
+     * the record instead of handling an entry without the machine fields.
+     */
+    synchronized JSONObject expanding(JSONObject record) {
+        String id = record.optString(HistoryStore.CONFIG_FIELD, null);
+        if (id == null) return record;
+
+        JSONObject configuration = configurations.get(id);
+        if (configuration == null) {
+            // записана другим экземпляром после нашего последнего чтения
+            try {
+                reading();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            configuration = configurations.get(id);
+            if (configuration == null) {
+                if (reportedMissing.add(id)) new IOException("Configuration " + id + " is missing").printStackTrace();
+                return null;
+            }
+        }
+
+        JSONObject entry = new JSONObject();
+        for (String key : configuration.keySet()) entry.put(key, configuration.get(key));
+        for (String key : record.keySet()) entry.put(key, record.get(key));
+        return entry;
+    }
+
+    /** Fields in key order, so the same machine gives the same text whatever order they were put in. */
+    private static String canonical(JSONObject configuration) {
+        StringBuilder canonical = new StringBuilder();
+        for (String key : new TreeSet<>(configuration.keySet())) {
+            canonical.append(JSONObject.quote(key)).append(':')
+                .append(JSONObject.valueToString(configuration.get(key))).append(',');
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * Id of a configuration before collisions are resolved: the start of the SHA-256 of its
+     * canonical text.
+     */
+    private static String hashOf(String canonical) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, ID_LENGTH / 2);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Forgets every configuration; the history is being cleared. Call with the history lock held.
+     */
+    synchronized void clear() throws IOException {
+        channel.truncate(0);
+        configurations.clear();
+        reportedMissing.clear();
+        readOffset = 0;
+    }
+
+    /**
+     * Reads the file again from the start, after another instance cleared the history.
+     */
+    synchronized void reloading() throws IOException {
+        configurations.clear();
+        reportedMissing.clear();
+        readOffset = 0;
+        reading();
+    }
+
+    synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads the complete lines added since the last read. A line being written by another
+     * instance is left for the next read.
+     */
+    private void reading() throws IOException {
+        long size = channel.size();
+        if (size <= readOffset) return;
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) (size - readOffset));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, readOffset + buffer.position()) < 0) break;
+        }
+
+        byte[] bytes = buffer.array();
+        int start = 0;
+        for (int i = 0; i < buffer.position(); i++) {
+            if (bytes[i] != '\n') continue;
+            parsingLine(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+            start = i + 1;
+        }
+        readOffset += start;
+    }
+
+    private void parsingLine(String line) {
+        if (line.isBlank()) return;
+        try {
+            JSONObject object = new JSONObject(line);
+            configurations.put(object.getString("id"), object.getJSONObject("config"));
+        } catch (Exception e) {
+            // повреждённую строку пропускаем; записи с её id история тоже пропустит
+            System.out.println("Конфигурации: пропущена повреждённая строка");
+            e.printStackTrace();
+        }
+    }
+
+    private void writing(String id, JSONObject configuration) throws IOException {
+        cuttingTornTail();
+
+        JSONObject line = new JSONObject();
+        line.put("id", id);
+        line.put("config", configuration);
+
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        long position = readOffset;
+        while (buffer.hasRemaining()) position += channel.write(buffer, position);
+        // новая машина — редкость; сбрасываем сразу, ведь запись истории будет ссылаться на неё
+        channel.force(false);
+
+        readOffset = position;
+        configurations.put(id, configuration);
+    }
+
+    /**
+     * Cuts a line left unfinished by a crash, so the next one does not stick to it. Only safe
+     * with the history lock held.
+     */
+    private void cuttingTornTail() throws IOException {
+        if (channel.size() > readOffset) channel.truncate(readOffset);
+    }
+}
@@ -0,0 +1,190 @@
+package history;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.JSONObject;
+
+/**
+ * Exports the history as a training set in the layout of {@code PythonAI/dataset/dataset.csv},
+ * so evaluations can be added to the data the model is retrained on.
+ * <p>
+ * The history is streamed: records are cut into chunks, the chunks are encoded to CSV on
+ * several threads and written in their original order. Only a few chunks are in memory at a
+ * time, whatever the size of the history.
+ */
+public final class HistoryExporter {
+
+    /** Columns of {@code dataset.csv}, in its order. */
+    public static final List<String> DATASET_COLUMNS = List.of("price", "os", "new", "model_cpu", "core",
+        "frequency_ghz", "socket", "ram_gb", "ram_type", "ram_ghz", "model_gpu", "vram_gb", "storage_gb",
+        "mother_board", "power_supply", "estimation", "link", "general_score");
+
+    /** Written as floats ("4.0", "4300.0"), 0.0 when unknown, as in the dataset. */
+    private static final Set<String> FLOAT_COLUMNS = Set.of("core", "frequency_ghz", "ram_gb", "ram_ghz",
+        "vram_gb", "storage_gb", "power_supply");
+    /** Not recorded by the app: left empty. */
+    private static final Set<String> EMPTY_COLUMNS = Set.of("price", "link", "general_score");
+
+    private static final String UNKNOWN = "unknown";
+    private static final int CHUNK_SIZE = 4096;
+
+    private HistoryExporter() {}
+
+    /**
+     * Writes the whole history to {@code target} as CSV. The file is written next to the
+     * target and moved in place at the end, so a failed export leaves no half file behind.
+     *
+     * @return number of exported records
+     */
+    public static int exportCsv(HistoryStore store, Path target) throws IOException {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        ExecutorService encoders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "history-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Pipeline pipeline;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+                out.write((String.join(",", DATASET_COLUMNS) + "\n").getBytes(StandardCharsets.UTF_8));
+
+                pipeline = new Pipeline(encoders, out, threads * 2);
+                try {
+                    store.forEach(pipeline::adding);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                pipeline.finishing();
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("История выгружена в " + target + ": " + pipeline.count + " записей");
+            return pipeline.count;
+
+        } finally {
+            encoders.shutdownNow();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Chunks on their way to the file. When {@code maxInFlight} chunks are being encoded the
+     * reader waits for the oldest one, which also keeps the output in the history order.
+     */
+    private static class Pipeline {
+        private final ExecutorService encoders;
+        private final OutputStream out;
+        private final int maxInFlight;
+
+        private final ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        private List<JSONObject> chunk = new ArrayList<>(CHUNK_SIZE);
+        private int count;
+
+        Pipeline(ExecutorService encoders, OutputStream out, int maxInFlight) {
+            this.encoders = encoders;
+            this.out = out;
+            this.maxInFlight = maxInFlight;
+        }
+
+        void adding(JSONObject entry) {
+            chunk.add(entry);
+            count++;
+            if (chunk.size() < CHUNK_SIZE) return;
+
+            try {
+                submitting();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finishing() throws IOException {
+            if (!chunk.isEmpty()) submitting();
+            while (!inFlight.isEmpty()) writingOldest();
+        }
+
+        private void submitting() throws IOException {
+            List<JSONObject> full = chunk;
+            chunk = new ArrayList<>(CHUNK_SIZE);
+            inFlight.add(encoders.submit(() -> encoding(full)));
+
+            while (inFlight.size() >= maxInFlight) writingOldest();
+        }
+
+        private void writingOldest() throws IOException {
+            try {
+                out.write(inFlight.poll().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Выгрузка прервана", e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    private static byte[] encoding(List<JSONObject> chunk) {
+        StringBuilder csv = new StringBuilder(chunk.size() * 192);
+        for (JSONObject entry : chunk) {
+            for (int i = 0; i < DATASET_COLUMNS.size(); i++) {
+                if (i > 0) csv.append(',');
+                appendingField(csv, valueOf(entry, DATASET_COLUMNS.get(i)));
+            }
+            csv.append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Value of one column for a history entry, in the conventions of the dataset.
+     */
+    private static String valueOf(JSONObject entry, String column) {
+        if (EMPTY_COLUMNS.contains(column)) return "";
+
+        if (FLOAT_COLUMNS.contains(column)) {
+            double value = entry.optDouble(column, Double.NaN);
+            return Double.toString(Double.isNaN(value) ? 0.0 : value);
+        }
+
+        String value = entry.optString("estimation".equals(column) ? "result" : column, "").trim();
+        if (value.isEmpty()) return UNKNOWN;
+        // в истории новизна записана как "new"/"no", в наборе — "yes"/"no"
+        if ("new".equals(column) && "new".equals(value)) return "yes";
+        return value;
+    }
+
+    /**
+     * Appends a field, quoted the way Python's csv module does it when it contains a comma,
+     * a quote or a line break.
+     */
+    private static void appendingField(StringBuilder csv, String value) {
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quoted) {
+            csv.append(value);
+            return;
+        }
+        csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
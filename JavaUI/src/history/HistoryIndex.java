@@ -0,0 +1,305 @@
+package history;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.CRC32;
+
+import org.json.JSONObject;
+
+/**
+ * Sidecar index of a history log ({@code history.jsonl.idx}), memory-mapped: one fixed-width
+ * record per history entry with its byte offset and length in the log, its timestamp and its
+ * result. The count, the list rows and any single entry are available in O(1) without parsing
+ * the log. The header remembers how much of the log is indexed and a checksum of the last
+ * indexed line: records appended by a run that crashed before indexing them are indexed on
+ * open, and an index that does not match the log (or is missing) is rebuilt.
+ * <p>
+ * Layout (little-endian): 32-byte header {@code "TAHI", version, count, reserved,
+ * long indexedLength, int lastLineCrc, reserved}, then 64-byte records {@code long offset,
+ * int length, long timestamp, short resultBytes, byte[42] result}.
+ */
+public class HistoryIndex {
+
+    public static final String FILE_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x49484154; // "TAHI", little-endian
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int RECORD_BYTES = 64;
+    private static final int RESULT_BYTES = 42;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Timestamp of an entry without a readable "timestamp" field. */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    public static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * What the history list needs from one entry.
+     */
+    public record Summary(long timestamp, String result) {
+
+        /** The timestamp as written in the record, e.g. "2026-10-17 14:05:31", or null. */
+        public String timestampText() {
+            return (timestamp == NO_TIMESTAMP) ? null : formatTimestamp(timestamp);
+        }
+    }
+
+    private final Path indexPath;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int count;
+
+    private HistoryIndex(Path indexPath) {
+        this.indexPath = indexPath;
+    }
+
+    public static Path indexPathFor(Path logPath) {
+        return logPath.resolveSibling(logPath.getFileName() + FILE_SUFFIX);
+    }
+
+    /**
+     * Opens the index of a log, bringing it up to date with the log first.
+     */
+    public static HistoryIndex open(Path logPath, FileChannel log) throws IOException {
+        HistoryIndex index = new HistoryIndex(indexPathFor(logPath));
+        index.channel = FileChannel.open(index.indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+
+        long logSize = log.size();
+        if (index.channel.size() < HEADER_BYTES) {
+            index.reset();
+        } else {
+            index.mapping(Math.max(index.channel.size(), HEADER_BYTES));
+            if (!index.isValidFor(log, logSize)) {
+                System.out.println("Индекс истории устарел, перестраивается: " + index.indexPath);
+                index.reset();
+            } else {
+                index.count = index.map.getInt(8);
+            }
+        }
+
+        // дописываем в индекс то, что появилось в логе после последнего индексирования
+        long indexedLength = index.map.getLong(16);
+        if (indexedLength < logSize) index.scan(log, indexedLength, logSize);
+
+        return index;
+    }
+
+    /**
+     * Brings the index up to date with records another process appended to the log (and to
+     * this shared index) since. Only the new lines, if any, are read. Call it with the history
+     * locked.
+     */
+    public void refresh(FileChannel log) throws IOException {
+        long logSize = log.size();
+        // другой процесс мог расширить файл индекса
+        if (channel.size() > map.capacity()) mapping(channel.size());
+
+        if (!isValidFor(log, logSize)) {
+            System.out.println("Индекс истории изменён извне, перестраивается: " + indexPath);
+            reset();
+        } else {
+            count = map.getInt(8);
+        }
+
+        long indexedLength = map.getLong(16);
+        if (indexedLength < logSize) scan(log, indexedLength, logSize);
+    }
+
+    private boolean isValidFor(FileChannel log, long logSize) throws IOException {
+        if (map.getInt(0) != MAGIC || map.getInt(4) != FORMAT_VERSION) return false;
+
+        int storedCount = map.getInt(8);
+        long indexedLength = map.getLong(16);
+        if (storedCount < 0 || indexedLength > logSize) return false;
+        if ((long) HEADER_BYTES + (long) storedCount * RECORD_BYTES > channel.size()) return false;
+        if (storedCount == 0) return true;
+
+        int last = HEADER_BYTES + (storedCount - 1) * RECORD_BYTES;
+        long offset = map.getLong(last);
+        int length = map.getInt(last + 8);
+        if (offset + length > logSize) return false;
+
+        return crc(readLine(log, offset, length)) == map.getInt(24);
+    }
+
+    /**
+     * Empties the index (e.g. after the history was cleared). The file keeps its size: a mapped
+     * file cannot be truncated on Windows.
+     */
+    public void reset() throws IOException {
+        if (map == null || map.capacity() < HEADER_BYTES + RECORD_BYTES) {
+            mapping(Math.max(channel.size(), HEADER_BYTES + (long) INITIAL_CAPACITY * RECORD_BYTES));
+        }
+        map.putInt(0, MAGIC);
+        map.putInt(4, FORMAT_VERSION);
+        map.putInt(8, 0);
+        map.putLong(16, 0);
+        map.putInt(24, 0);
+        count = 0;
+    }
+
+    private void mapping(long size) throws IOException {
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Indexes the log lines in {@code [from, to)}. Lines that are not valid JSON are left out.
+     * Reads with absolute positions, the log's own position is not touched.
+     */
+    private void scan(FileChannel log, long from, long to) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        long lineStart = from;
+        long position = from;
+        while (position < to) {
+            chunk.clear();
+            chunk.limit((int) Math.min(chunk.capacity(), to - position));
+            int read = log.read(chunk, position);
+            if (read <= 0) break;
+
+            for (int i = 0; i < read; i++) {
+                byte b = chunk.get(i);
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+
+                long lineEnd = position + i + 1;
+                byte[] bytes = line.toByteArray();
+                line.reset();
+                try {
+                    append(lineStart, bytes, new JSONObject(new String(bytes, StandardCharsets.UTF_8)));
+                } catch (Exception e) {
+                    // не JSON — такой строки для истории нет
+                    map.putLong(16, lineEnd);
+                }
+                lineStart = lineEnd;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Adds the record for a line just written to the log at {@code offset} ({@code line} without
+     * the line break). The header is updated last, so a crash leaves a shorter valid index.
+     */
+    public void append(long offset, byte[] line, JSONObject entry) throws IOException {
+        long needed = HEADER_BYTES + (long) (count + 1) * RECORD_BYTES;
+        if (needed > map.capacity()) mapping(Math.max(needed, HEADER_BYTES + 2L * (map.capacity() - HEADER_BYTES)));
+
+        int base = HEADER_BYTES + count * RECORD_BYTES;
+        map.putLong(base, offset);
+        map.putInt(base + 8, line.length);
+        map.putLong(base + 12, parseTimestamp(entry.optString("timestamp", null)));
+
+        byte[] result = truncateUtf8(entry.optString("result", ""), RESULT_BYTES);
+        map.putShort(base + 20, (short) result.length);
+        map.put(base + 22, result);
+
+        count++;
+        map.putLong(16, offset + line.length + 1);
+        map.putInt(24, crc(line));
+        map.putInt(8, count);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long offset(int index) {
+        return map.getLong(record(index));
+    }
+
+    public int length(int index) {
+        return map.getInt(record(index) + 8);
+    }
+
+    public long timestamp(int index) {
+        return map.getLong(record(index) + 12);
+    }
+
+    public String result(int index) {
+        int base = record(index);
+        byte[] bytes = new byte[map.getShort(base + 20)];
+        map.get(base + 22, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public Summary summary(int index) {
+        return new Summary(timestamp(index), result(index));
+    }
+
+    private int record(int index) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException("History entry " + index + " of " + count);
+        return HEADER_BYTES + index * RECORD_BYTES;
+    }
+
+    public void force() {
+        map.force();
+    }
+
+    public void close() throws IOException {
+        map.force();
+        map = null;
+        channel.close();
+    }
+
+    /**
+     * Reads {@code length} bytes of the log at {@code offset} without moving its position.
+     */
+    public static byte[] readLine(FileChannel log, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (log.read(buffer, offset + buffer.position()) < 0) throw new IOException("History log is shorter than its index");
+        }
+        return buffer.array();
+    }
+
+    public static long parseTimestamp(String text) {
+        if (text == null || text.isBlank()) return NO_TIMESTAMP;
+        try {
+            // время в записи локальное, храним его как есть в секундах
+            return LocalDateTime.parse(text.trim(), TIMESTAMP_FORMAT).toEpochSecond(ZoneOffset.UTC);
+        } catch (Exception e) {
+            return NO_TIMESTAMP;
+        }
+    }
+
+    public static String formatTimestamp(long timestamp) {
+        return LocalDateTime.ofEpochSecond(timestamp, 0, ZoneOffset.UTC).format(TIMESTAMP_FORMAT);
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * UTF-8 bytes of the text, cut at a character boundary to fit {@code maxBytes}.
+     */
+    private static byte[] truncateUtf8(String text, int maxBytes) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= maxBytes) return bytes;
+
+        int end = maxBytes;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) end--;
+        byte[] cut = new byte[end];
+        System.arraycopy(bytes, 0, cut, 0, end);
+        return cut;
+    }
+}
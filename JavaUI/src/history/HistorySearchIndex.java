@@ -0,0 +1,384 @@
+package history;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONObject;
+
+/**
+ * In-memory search over the history. Text fields have an inverted index: for every value and
+ * for every word the {@link Postings} of the positions that contain it, a sorted array for a
+ * rare term and a bitmap for a frequent one. Numeric fields are columns sorted by value, so a
+ * range is two binary searches. A query is a few bitmap intersections, well under a
+ * millisecond for hundreds of thousands of entries.
+ * <p>
+ * The configuration id is indexed as an exact value, so all evaluations of one machine are a
+ * facet: {@code facet(HistoryStore.CONFIG_FIELD, id)}.
+ * <p>
+ * The index is filled once from the whole history, without holding the store (see
+ * {@link HistoryStore#attachFromSnapshot}), and then follows it entry by entry as a
+ * {@link HistoryStore.Listener}.
+ */
+public class HistorySearchIndex implements HistoryStore.Listener {
+
+    public static final List<String> TEXT_FIELDS = List.of("model_cpu", "model_gpu", "socket", "ram_type", "os", "result");
+    public static final List<String> NUMERIC_FIELDS = List.of("ram_gb", "vram_gb", "core", "timestamp");
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern COMPARISON = Pattern.compile("(\\w+)(>=|<=|>|<|=)(-?\\d+(?:[.,]\\d+)?)");
+
+    /** Occurrences a term needs before it may switch to a bitmap. */
+    private static final int MIN_DENSE_POSTINGS = 64;
+
+    private static HistorySearchIndex instance;
+
+    /** Field → exact value → positions (for the facets). */
+    private final Map<String, Map<String, Postings>> values = new HashMap<>();
+    /** Word of any text field → positions; sorted, so a prefix is a sub-map. */
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+    private final Map<String, SortedColumn> columns = new HashMap<>();
+    private int count;
+
+    private HistorySearchIndex() {
+        reset();
+    }
+
+    /**
+     * The index of {@link HistoryStore#getInstance()}, built on first use. Reads the whole
+     * history the first time, so call it off the UI thread.
+     */
+    public static synchronized HistorySearchIndex getInstance() throws IOException {
+        if (instance == null) {
+            HistorySearchIndex index = new HistorySearchIndex();
+            HistoryStore.getInstance().attachFromSnapshot(index);
+            instance = index;
+        }
+        return instance;
+    }
+
+    /**
+     * What to look for; empty parts match everything.
+     */
+    public static class Query {
+        private final List<String> words = new ArrayList<>();
+        private final Map<String, String> facets = new LinkedHashMap<>();
+        private final Map<String, double[]> ranges = new LinkedHashMap<>();
+
+        /**
+         * Words from a search box; every word must start a word of some text field. Comparisons
+         * of numeric fields ({@code ram_gb>=16}, {@code core=8}) become ranges.
+         */
+        public static Query parse(String text) {
+            Query query = new Query();
+            if (text == null) return query;
+
+            for (String part : text.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+                Matcher comparison = COMPARISON.matcher(part);
+                if (comparison.matches() && NUMERIC_FIELDS.contains(comparison.group(1))) {
+                    query.comparing(comparison.group(1), comparison.group(2),
+                        Double.parseDouble(comparison.group(3).replace(',', '.')));
+                    continue;
+                }
+                query.words.addAll(tokens(part));
+            }
+            return query;
+        }
+
+        /** Only entries whose field equals the value; a null or blank value is ignored. */
+        public Query facet(String field, String value) {
+            if (value != null && !value.isBlank()) facets.put(field, normalize(value));
+            return this;
+        }
+
+        /** Only entries whose numeric field lies in {@code [min, max]}. */
+        public Query range(String field, double min, double max) {
+            double[] current = ranges.get(field);
+            if (current != null) {
+                min = Math.max(min, current[0]);
+                max = Math.min(max, current[1]);
+            }
+            ranges.put(field, new double[] {min, max});
+            return this;
+        }
+
+        private void comparing(String field, String operator, double value) {
+            switch (operator) {
+                case ">=" -> range(field, value, Double.POSITIVE_INFINITY);
+                case ">" -> range(field, Math.nextUp(value), Double.POSITIVE_INFINITY);
+                case "<=" -> range(field, Double.NEGATIVE_INFINITY, value);
+                case "<" -> range(field, Double.NEGATIVE_INFINITY, Math.nextDown(value));
+                default -> range(field, value, value);
+            }
+        }
+
+        public boolean isEmpty() {
+            return words.isEmpty() && facets.isEmpty() && ranges.isEmpty();
+        }
+    }
+
+    @Override
+    public synchronized void reset() {
+        values.clear();
+        words.clear();
+        columns.clear();
+        for (String field : TEXT_FIELDS) values.put(field, new HashMap<>());
+        values.put(HistoryStore.CONFIG_FIELD, new HashMap<>());
+        for (String field : NUMERIC_FIELDS) columns.put(field, new SortedColumn());
+        count = 0;
+    }
+
+    @Override
+    public synchronized void appended(int position, JSONObject entry) {
+        for (String field : TEXT_FIELDS) {
+            String value = normalize(entry.optString(field, ""));
+            if (value.isEmpty()) continue;
+
+            values.get(field).computeIfAbsent(value, _ -> new Postings()).add(position);
+            for (String word : tokens(value)) words.computeIfAbsent(word, _ -> new Postings()).add(position);
+        }
+
+        String config = entry.optString(HistoryStore.CONFIG_FIELD, "");
+        if (!config.isEmpty()) values.get(HistoryStore.CONFIG_FIELD).computeIfAbsent(config, _ -> new Postings()).add(position);
+
+        for (String field : NUMERIC_FIELDS) {
+            double value = "timestamp".equals(field) ? timestampOf(entry) : entry.optDouble(field, Double.NaN);
+            if (!Double.isNaN(value)) columns.get(field).add(value, position);
+        }
+
+        count = Math.max(count, position + 1);
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Positions of the matching entries.
+     */
+    public synchronized BitSet search(Query query) {
+        BitSet result = new BitSet(count);
+        result.set(0, count);
+
+        for (Map.Entry<String, String> facet : query.facets.entrySet()) {
+            Map<String, Postings> field = values.get(facet.getKey());
+            Postings matching = (field == null) ? null : field.get(facet.getValue());
+            if (matching == null) return new BitSet();
+            matching.andInto(result);
+        }
+
+        for (String word : query.words) {
+            // слово запроса — начало слова в записи: "ryz" находит "ryzen"
+            BitSet matching = new BitSet(count);
+            for (Postings positions : words.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                positions.orInto(matching);
+            }
+            result.and(matching);
+            if (result.isEmpty()) return result;
+        }
+
+        for (Map.Entry<String, double[]> range : query.ranges.entrySet()) {
+            SortedColumn column = columns.get(range.getKey());
+            if (column == null) return new BitSet();
+            result.and(column.range(range.getValue()[0], range.getValue()[1]));
+        }
+        return result;
+    }
+
+    /**
+     * Values of a text field, the most frequent first.
+     */
+    public synchronized List<String> values(String field) {
+        Map<String, Postings> fieldValues = values.getOrDefault(field, Map.of());
+        List<Map.Entry<String, Postings>> entries = new ArrayList<>(fieldValues.entrySet());
+        entries.sort((a, b) -> Integer.compare(b.getValue().size(), a.getValue().size()));
+
+        List<String> result = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Postings> entry : entries) result.add(entry.getKey());
+        return result;
+    }
+
+    /**
+     * Positions newest first, the order of the history list.
+     */
+    public static int[] newestFirst(BitSet positions) {
+        int[] result = new int[positions.cardinality()];
+        int i = 0;
+        for (int position = positions.previousSetBit(positions.length() - 1); position >= 0;
+                position = positions.previousSetBit(position - 1)) {
+            result[i++] = position;
+        }
+        return result;
+    }
+
+    private static double timestampOf(JSONObject entry) {
+        long timestamp = HistoryIndex.parseTimestamp(entry.optString("timestamp", null));
+        return (timestamp == HistoryIndex.NO_TIMESTAMP) ? Double.NaN : timestamp;
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : WORD_SEPARATOR.split(text)) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * Positions of one value or word. A rare term keeps them in a sorted array, 32 bits per
+     * entry; once it has {@link #MIN_DENSE_POSTINGS} of them and the array would take more than
+     * a bitmap up to its last position (one bit per entry of the history), it switches to a
+     * {@link BitSet}. Memory then grows with the number
+     * of occurrences instead of distinct terms × history size.
+     */
+    private static class Postings {
+        private int[] sorted = new int[4];
+        private int size;
+        private BitSet dense;
+
+        void add(int position) {
+            if (dense != null) {
+                if (!dense.get(position)) size++;
+                dense.set(position);
+                return;
+            }
+
+            // позиции приходят по возрастанию; иначе — вставка на своё место
+            int at = (size == 0 || sorted[size - 1] < position) ? size : Arrays.binarySearch(sorted, 0, size, position);
+            if (at >= 0 && at < size) return;
+            if (at < 0) at = -at - 1;
+
+            if (size == sorted.length) sorted = Arrays.copyOf(sorted, size * 2);
+            System.arraycopy(sorted, at, sorted, at + 1, size - at);
+            sorted[at] = position;
+            size++;
+
+            if (size >= MIN_DENSE_POSTINGS && (long) size * Integer.SIZE > sorted[size - 1] + 1L) densifying();
+        }
+
+        int size() {
+            return size;
+        }
+
+        void orInto(BitSet target) {
+            if (dense != null) {
+                target.or(dense);
+                return;
+            }
+            for (int i = 0; i < size; i++) target.set(sorted[i]);
+        }
+
+        void andInto(BitSet result) {
+            if (dense != null) {
+                result.and(dense);
+                return;
+            }
+
+            BitSet matching = new BitSet();
+            for (int i = 0; i < size; i++) {
+                if (result.get(sorted[i])) matching.set(sorted[i]);
+            }
+            result.clear();
+            result.or(matching);
+        }
+
+        private void densifying() {
+            dense = new BitSet(sorted[size - 1] + 1);
+            for (int i = 0; i < size; i++) dense.set(sorted[i]);
+            sorted = null;
+        }
+    }
+
+    /**
+     * Values of one numeric field with their positions, ordered by value. New values are added
+     * at the end; while they come in order (e.g. timestamps) the column stays sorted, otherwise
+     * the unsorted tail is sorted and merged in by the next query.
+     */
+    private static class SortedColumn {
+        private double[] values = new double[256];
+        private int[] positions = new int[256];
+        private int size;
+        private int sortedSize;
+
+        void add(double value, int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+
+            boolean inOrder = sortedSize == size && (size == 0 || values[size - 1] <= value);
+            values[size] = value;
+            positions[size] = position;
+            size++;
+            if (inOrder) sortedSize = size;
+        }
+
+        BitSet range(double min, double max) {
+            sorting();
+
+            BitSet result = new BitSet();
+            for (int i = lowerBound(min), end = upperBound(max); i < end; i++) result.set(positions[i]);
+            return result;
+        }
+
+        private void sorting() {
+            if (sortedSize == size) return;
+
+            Integer[] tail = new Integer[size - sortedSize];
+            for (int i = 0; i < tail.length; i++) tail[i] = sortedSize + i;
+            Arrays.sort(tail, (a, b) -> Double.compare(values[a], values[b]));
+
+            // слияние отсортированной части с отсортированным хвостом
+            double[] mergedValues = new double[values.length];
+            int[] mergedPositions = new int[positions.length];
+            int left = 0, right = 0, out = 0;
+            while (left < sortedSize || right < tail.length) {
+                int from;
+                if (right == tail.length || (left < sortedSize && values[left] <= values[tail[right]])) from = left++;
+                else from = tail[right++];
+
+                mergedValues[out] = values[from];
+                mergedPositions[out++] = positions[from];
+            }
+
+            values = mergedValues;
+            positions = mergedPositions;
+            sortedSize = size;
+        }
+
+        /** First index with a value {@code >= value}. */
+        private int lowerBound(double value) {
+            int low = 0, high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < value) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+
+        /** First index with a value {@code > value}. */
+        private int upperBound(double value) {
+            int low = 0, high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] <= value) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+    }
+}
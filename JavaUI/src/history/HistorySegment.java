@@ -0,0 +1,35 @@
+package history;
+
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.function.Consumer;
+
+import org.json.JSONObject;
+
+/**
+ * History of one month: the writable {@link LiveSegment} or a compressed {@link ArchivedSegment}.
+ * Positions are local to the segment, 0 being its oldest entry.
+ */
+interface HistorySegment {
+
+    YearMonth month();
+
+    int size();
+
+    JSONObject get(int position) throws IOException;
+
+    HistoryIndex.Summary summary(int position) throws IOException;
+
+    /**
+     * All entries from the oldest to the newest.
+     */
+    void forEach(Consumer<JSONObject> action) throws IOException;
+
+    void close();
+
+    /**
+     * Closes the segment and deletes its files (history cleared, or the month is past the
+     * retention period).
+     */
+    void delete() throws IOException;
+}
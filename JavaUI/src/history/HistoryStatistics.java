@@ -0,0 +1,226 @@
+package history;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONObject;
+
+/**
+ * Counters over the history: evaluations by result, by CPU and GPU vendor, by month and by model
+ * version. Every appended entry only increments a few counters, so reading them costs as much
+ * as the number of buckets, whatever the size of the history.
+ * <p>
+ * The counters are saved on exit together with the number of entries they cover and the
+ * timestamps of the first and last of them. On the next launch only the entries appended
+ * after that are read; if the history no longer starts and ends the same way (cleared, old
+ * months dropped) everything is counted again.
+ */
+public class HistoryStatistics implements HistoryStore.Listener {
+
+    public static final String STATISTICS_PATH = HistoryStore.HISTORY_DIR + "statistics.json";
+
+    /** Vendor of a model that none of the rules recognize. */
+    public static final String OTHER = "other";
+    /** Bucket of an entry without the field (e.g. no timestamp). */
+    public static final String UNKNOWN = "unknown";
+
+    private static final int FORMAT_VERSION = 1;
+
+    /** Vendor and the markers of its model names, checked in order. */
+    private static final List<Map.Entry<String, List<String>>> CPU_VENDORS = List.of(
+        Map.entry("Intel", List.of("intel", "core i", "xeon", "pentium", "celeron")),
+        Map.entry("AMD", List.of("amd", "ryzen", "athlon", "threadripper", "epyc", "phenom")));
+    private static final List<Map.Entry<String, List<String>>> GPU_VENDORS = List.of(
+        Map.entry("NVIDIA", List.of("nvidia", "geforce", "rtx", "gtx", "quadro", "titan")),
+        Map.entry("AMD", List.of("amd", "radeon", "rx ", "vega")),
+        Map.entry("Intel", List.of("intel", "arc ", "iris", "uhd", "hd graphics")));
+
+    private static HistoryStatistics instance;
+
+    /**
+     * Copy of the counters at one moment, for the dashboard.
+     */
+    public record Snapshot(int total, Map<String, Integer> byResult, Map<String, Integer> byCpuVendor,
+                           Map<String, Integer> byGpuVendor, Map<String, Integer> byMonth,
+                           Map<String, Integer> byModel) {}
+
+    private final Path path;
+
+    private final Map<String, Integer> byResult = new TreeMap<>();
+    private final Map<String, Integer> byCpuVendor = new TreeMap<>();
+    private final Map<String, Integer> byGpuVendor = new TreeMap<>();
+    private final Map<String, Integer> byMonth = new TreeMap<>();
+    private final Map<String, Integer> byModel = new TreeMap<>();
+    private int total;
+    /** Positions the counters have seen; more than {@link #total} if corrupted entries were skipped. */
+    private int covered;
+
+    /** Timestamps of the first and last counted entries, to recognize the same history later. */
+    private long firstTimestamp = HistoryIndex.NO_TIMESTAMP;
+    private long lastTimestamp = HistoryIndex.NO_TIMESTAMP;
+
+    private HistoryStatistics(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * The counters of {@link HistoryStore#getInstance()}: restored from disk and brought up to
+     * date on first use, saved on exit. Call it off the UI thread the first time.
+     */
+    public static synchronized HistoryStatistics getInstance() throws IOException {
+        if (instance == null) {
+            HistoryStatistics statistics = new HistoryStatistics(Paths.get(STATISTICS_PATH));
+            HistoryStore store = HistoryStore.getInstance();
+
+            int known = statistics.loading(store);
+            store.attach(statistics, known);
+            Runtime.getRuntime().addShutdownHook(new Thread(statistics::saving, "history-statistics-save"));
+
+            instance = statistics;
+        }
+        return instance;
+    }
+
+    @Override
+    public synchronized void reset() {
+        byResult.clear();
+        byCpuVendor.clear();
+        byGpuVendor.clear();
+        byMonth.clear();
+        byModel.clear();
+        total = 0;
+        covered = 0;
+        firstTimestamp = HistoryIndex.NO_TIMESTAMP;
+        lastTimestamp = HistoryIndex.NO_TIMESTAMP;
+    }
+
+    @Override
+    public synchronized void appended(int position, JSONObject entry) {
+        long timestamp = HistoryIndex.parseTimestamp(entry.optString("timestamp", null));
+
+        increment(byResult, bucket(entry.optString("result", "")));
+        increment(byCpuVendor, vendorOf(entry.optString("model_cpu", ""), CPU_VENDORS));
+        increment(byGpuVendor, vendorOf(entry.optString("model_gpu", ""), GPU_VENDORS));
+        increment(byMonth, monthOf(timestamp));
+        increment(byModel, bucket(entry.optString("model", "")));
+
+        if (total == 0) firstTimestamp = timestamp;
+        lastTimestamp = timestamp;
+        total++;
+        covered = Math.max(covered, position + 1);
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(total, new LinkedHashMap<>(byResult), new LinkedHashMap<>(byCpuVendor),
+            new LinkedHashMap<>(byGpuVendor), new LinkedHashMap<>(byMonth), new LinkedHashMap<>(byModel));
+    }
+
+    private static void increment(Map<String, Integer> counters, String bucket) {
+        counters.merge(bucket, 1, Integer::sum);
+    }
+
+    private static String bucket(String value) {
+        return value.isBlank() ? UNKNOWN : value.trim();
+    }
+
+    private static String monthOf(long timestamp) {
+        if (timestamp == HistoryIndex.NO_TIMESTAMP) return UNKNOWN;
+        LocalDateTime time = LocalDateTime.ofEpochSecond(timestamp, 0, ZoneOffset.UTC);
+        return String.format("%04d-%02d", time.getYear(), time.getMonthValue());
+    }
+
+    /**
+     * Vendor by the first rule whose marker occurs in the model name, e.g. "ryzen 5 5600" → AMD.
+     */
+    private static String vendorOf(String model, List<Map.Entry<String, List<String>>> rules) {
+        if (model.isBlank()) return UNKNOWN;
+        // пробел в конце: маркеры "rx " и "arc " срабатывают и в конце названия
+        String name = model.toLowerCase(Locale.ROOT) + " ";
+
+        for (Map.Entry<String, List<String>> vendor : rules) {
+            for (String marker : vendor.getValue()) {
+                if (name.contains(marker)) return vendor.getKey();
+            }
+        }
+        return OTHER;
+    }
+
+    /**
+     * Restores the saved counters if they still describe the start of this history.
+     *
+     * @return number of positions the counters cover, 0 if they had to be dropped
+     */
+    private int loading(HistoryStore store) {
+        try {
+            if (!Files.exists(path)) return 0;
+
+            JSONObject object = new JSONObject(Files.readString(path, StandardCharsets.UTF_8));
+            int count = object.getInt("total");
+            int seen = object.optInt("covered", count);
+            if (object.optInt("version") != FORMAT_VERSION || count <= 0 || seen > store.size()) return 0;
+
+            long first = object.getLong("firstTimestamp");
+            long last = object.getLong("lastTimestamp");
+            if (store.summary(0).timestamp() != first || store.summary(seen - 1).timestamp() != last) return 0;
+
+            synchronized (this) {
+                reading(object.getJSONObject("byResult"), byResult);
+                reading(object.getJSONObject("byCpuVendor"), byCpuVendor);
+                reading(object.getJSONObject("byGpuVendor"), byGpuVendor);
+                reading(object.getJSONObject("byMonth"), byMonth);
+                reading(object.getJSONObject("byModel"), byModel);
+                total = count;
+                covered = seen;
+                firstTimestamp = first;
+                lastTimestamp = last;
+            }
+            return seen;
+
+        } catch (Exception e) {
+            // повреждённый файл просто пересчитываем
+            e.printStackTrace();
+            reset();
+            return 0;
+        }
+    }
+
+    private static void reading(JSONObject object, Map<String, Integer> counters) {
+        for (String bucket : object.keySet()) counters.put(bucket, object.getInt(bucket));
+    }
+
+    private void saving() {
+        JSONObject object = new JSONObject();
+        synchronized (this) {
+            object.put("version", FORMAT_VERSION);
+            object.put("total", total);
+            object.put("covered", covered);
+            object.put("firstTimestamp", firstTimestamp);
+            object.put("lastTimestamp", lastTimestamp);
+            object.put("byResult", new JSONObject(byResult));
+            object.put("byCpuVendor", new JSONObject(byCpuVendor));
+            object.put("byGpuVendor", new JSONObject(byGpuVendor));
+            object.put("byMonth", new JSONObject(byMonth));
+            object.put("byModel", new JSONObject(byModel));
+        }
+
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.writeString(temp, object.toString(), StandardCharsets.UTF_8);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
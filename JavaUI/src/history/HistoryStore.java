@@ -0,0 +1,948 @@
+package history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Evaluation history, split into monthly segments. The current month is an append-only JSON
+ * Lines log ({@code history-YYYY-MM.jsonl}): every evaluation adds one compact record at the end
+ * of the file, so the cost of an append does not depend on the size of the history and a crash
+ * can only lose the record being written. Once a month is over its log is compressed into an
+ * {@link ArchivedSegment} ({@code history-YYYY-MM.tahz}), and archives older than the retention
+ * period are deleted. Positions (0 is the oldest entry) run across all segments, so readers
+ * do not see the split.
+ * <p>
+ * The old {@code history.json} array and the single {@code history.jsonl} log are migrated
+ * once, on first use.
+ * <p>
+ * A record holds only the evaluation (timestamp, model version, result) and the id of the
+ * machine configuration, which is stored once in a {@link ConfigurationStore}; readers get the
+ * full entry back, with the id in {@link #CONFIG_FIELD}. Records of earlier versions are
+ * compacted when their month is archived.
+ * <p>
+ * Derived views ({@link HistorySearchIndex}) {@link #attach} a {@link Listener} and are kept up to
+ * date entry by entry instead of rereading the history.
+ * <p>
+ * Several instances of the app may share the folder. Every change is made under an exclusive
+ * lock of {@code history.lock}, and the holder first catches up with what the others wrote, so
+ * no record is overwritten. The lock file also counts structural changes (a month archived,
+ * the history cleared or trimmed), which make the other instances reopen their segments.
+ * {@link #watch} follows the folder with a {@link WatchService} and passes records written by
+ * other instances to the listeners as they appear, reading only the new lines.
+ * <p>
+ * {@link #appendAsync} hands records to a background writer thread that group-commits them;
+ * the queue is flushed on shutdown. A crash can only tear the last line, which is cut off on
+ * the next open, and files are replaced only through a temporary file and an atomic move.
+ */
+public class HistoryStore {
+
+    public static final String HISTORY_DIR = "resources/assets/history/";
+    public static final String LOG_PATH = HISTORY_DIR + "history.jsonl";
+    public static final String LEGACY_PATH = HISTORY_DIR + "history.json";
+
+    /** Field of an entry with the id of its configuration; equal ids mean the same machine. */
+    public static final String CONFIG_FIELD = "config";
+
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String LOG_SUFFIX = ".jsonl";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("history-(\\d{4}-\\d{2})(\\.jsonl|\\.tahz)");
+
+    private static final String LOCK_NAME = "history.lock";
+    private static final String CONFIGURATIONS_NAME = "configurations.jsonl";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+    private static final long TAIL_DEBOUNCE_MS = 50;
+    private static final long PERIODIC_SYNC_MS = 1_000;
+    private static final int MAX_GROUP_COMMIT = 256;
+    private static final long SHUTDOWN_FLUSH_MS = 5_000;
+
+    /**
+     * When appended records are forced to the disk.
+     */
+    public enum SyncPolicy {
+        /** Left to the OS: fastest, a power loss may drop the last records. */
+        NONE,
+        /** At most once per second. */
+        PERIODIC,
+        /** After every append: no record is lost once append returns. */
+        EVERY_APPEND;
+
+        public static SyncPolicy parse(String value) {
+            for (SyncPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(value)) return policy;
+            }
+            return PERIODIC;
+        }
+    }
+
+    /**
+     * Receives every entry of the history with its position. Called with the store locked (the
+     * replay of {@link #attachFromSnapshot} aside, which runs on the attaching thread before the
+     * listener is registered), so the calls are serialized and must be quick. An entry whose
+     * configuration is corrupted is not sent; its position is skipped.
+     */
+    public interface Listener {
+        void appended(int position, JSONObject entry);
+
+        /** Positions have changed (history cleared, old months dropped); the entries are sent again. */
+        void reset();
+    }
+
+    private static HistoryStore instance;
+
+    private final Path historyDir;
+    private final Path logPath;
+    private final Path legacyPath;
+
+    private volatile SyncPolicy syncPolicy = SyncPolicy.PERIODIC;
+    private volatile int retentionMonths;
+
+    /** Record waiting for the background writer. */
+    private record Pending(JSONObject entry, CompletableFuture<Void> written) {}
+
+    private final LinkedBlockingQueue<Pending> writeQueue = new LinkedBlockingQueue<>();
+    private CompletableFuture<Void> lastQueued = CompletableFuture.completedFuture(null);
+    private Thread writer;
+
+    /** Segments from the oldest month; the last one is {@link #live}. */
+    private final TreeMap<YearMonth, HistorySegment> segments = new TreeMap<>();
+    private LiveSegment live;
+    private long lastSync;
+
+    private ConfigurationStore configurations;
+
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private FileChannel lockChannel;
+    /** Structural changes of the folder this instance has seen; the current number is in the lock file. */
+    private long generation;
+    private Thread tailer;
+
+    public HistoryStore(Path historyDir) {
+        this.historyDir = historyDir;
+        this.logPath = historyDir.resolve("history.jsonl");
+        this.legacyPath = historyDir.resolve("history.json");
+    }
+
+    public static synchronized HistoryStore getInstance() {
+        if (instance == null) {
+            instance = new HistoryStore(Paths.get(HISTORY_DIR));
+            HistoryStore store = instance;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                // сначала дописываем очередь, потом закрываем
+                store.flush(SHUTDOWN_FLUSH_MS);
+                store.close();
+            }, "history-close"));
+            store.watch();
+        }
+        return instance;
+    }
+
+    public void setSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+    }
+
+    /**
+     * How many months of history to keep, the current one included; 0 keeps everything.
+     */
+    public synchronized void setRetentionMonths(int retentionMonths) {
+        this.retentionMonths = Math.max(0, retentionMonths);
+        if (live == null) return;
+
+        try {
+            FileLock lock = lockingHistory();
+            try {
+                applyRetention();
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Appends one record as a single line, on the caller's thread.
+     */
+    public void append(JSONObject entry) throws IOException {
+        appendAll(List.of(entry));
+    }
+
+    /**
+     * Appends several records with one write and at most one fsync (group commit). A record of a
+     * later month than the current segment closes it and starts the next one.
+     */
+    public synchronized void appendAll(List<JSONObject> entries) throws IOException {
+        if (entries.isEmpty()) return;
+
+        FileLock lock = lockingHistory();
+        try {
+            List<JSONObject> run = new ArrayList<>(entries.size());
+            for (JSONObject entry : entries) {
+                YearMonth month = monthOf(entry);
+                if (month.isAfter(live.month())) {
+                    if (!run.isEmpty()) appendingRun(run);
+                    run = new ArrayList<>();
+                    rollingOver(month);
+                }
+                run.add(configurations.compacting(entry));
+            }
+            appendingRun(run);
+
+            long now = System.currentTimeMillis();
+            if (syncPolicy == SyncPolicy.EVERY_APPEND
+                || (syncPolicy == SyncPolicy.PERIODIC && now - lastSync >= PERIODIC_SYNC_MS)) {
+                sync();
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void appendingRun(List<JSONObject> run) throws IOException {
+        live.appendAll(run);
+        notifyingAppended(totalSize() - run.size(), run);
+    }
+
+    private void notifyingAppended(int first, List<JSONObject> run) {
+        if (listeners.isEmpty()) return;
+
+        for (int i = 0; i < run.size(); i++) {
+            JSONObject entry = configurations.expanding(run.get(i));
+            if (entry == null) continue;
+            for (Listener listener : listeners) {
+                try {
+                    listener.appended(first + i, entry);
+                } catch (RuntimeException e) {
+                    // сбой производного представления не мешает записи истории
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the whole history to a listener and keeps it informed of every later change.
+     * Reads every segment, so call it off the UI thread.
+     */
+    public synchronized void attach(Listener listener) throws IOException {
+        attach(listener, 0);
+    }
+
+    /**
+     * Like {@link #attach(Listener)} for a listener that already holds the first {@code known}
+     * entries (e.g. restored from disk): it only gets the entries after them. If the history
+     * has fewer entries (or {@code known} is negative), the listener is reset and gets everything.
+     */
+    public synchronized void attach(Listener listener, int known) throws IOException {
+        // сначала догоняем другие экземпляры, чтобы слушатель не получил их записи дважды
+        lockingHistory().release();
+        listeners.add(listener);
+
+        if (known < 0 || known > totalSize()) {
+            replaying(listener);
+            return;
+        }
+
+        // целые сегменты до known пропускаем, не читая
+        int first = 0;
+        for (HistorySegment segment : segments.values()) {
+            int size = segment.size();
+            for (int i = Math.max(0, known - first); i < size; i++) {
+                JSONObject entry = configurations.expanding(segment.get(i));
+                if (entry != null) listener.appended(first + i, entry);
+            }
+            first += size;
+        }
+    }
+
+    /**
+     * Like {@link #attach(Listener)}, but the bulk of the history is sent without holding the
+     * store, so appends and the background writer are not blocked while a large history is
+     * replayed. The segments are taken under the lock and read outside it; the listener is then
+     * attached with {@link #attach(Listener, int)} and gets only what was appended meanwhile.
+     * If the history was reopened, cleared or trimmed in between, it is replayed again under
+     * the lock.
+     */
+    public void attachFromSnapshot(Listener listener) throws IOException {
+        List<HistorySegment> snapshot;
+        int[] sizes;
+        ConfigurationStore store;
+        LiveSegment seenLive;
+        long seenGeneration;
+        synchronized (this) {
+            lockingHistory().release();
+            snapshot = new ArrayList<>(segments.values());
+            sizes = new int[snapshot.size()];
+            for (int i = 0; i < sizes.length; i++) sizes[i] = snapshot.get(i).size();
+            store = configurations;
+            seenLive = live;
+            seenGeneration = generation;
+        }
+
+        int known = 0;
+        try {
+            listener.reset();
+            for (int i = 0; i < sizes.length; i++) {
+                // живой сегмент мог вырасти — лишнее придёт из attach
+                int size = sizes[i];
+                int[] local = {0};
+                int first = known;
+                snapshot.get(i).forEach(record -> {
+                    if (local[0] >= size) return;
+                    JSONObject entry = store.expanding(record);
+                    if (entry != null) listener.appended(first + local[0], entry);
+                    local[0]++;
+                });
+                known += size;
+            }
+        } catch (IOException | RuntimeException e) {
+            // сегмент закрыли, пока его читали
+            e.printStackTrace();
+            known = -1;
+        }
+
+        synchronized (this) {
+            // догоняем другие экземпляры до сравнения: их перестройка тоже сдвигает позиции
+            lockingHistory().release();
+            boolean unchanged = live == seenLive && generation == seenGeneration;
+            attach(listener, unchanged ? known : -1);
+        }
+    }
+
+    public synchronized void detach(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void replaying(Listener listener) throws IOException {
+        listener.reset();
+
+        int[] position = {0};
+        for (HistorySegment segment : segments.values()) {
+            segment.forEach(record -> {
+                JSONObject entry = configurations.expanding(record);
+                if (entry != null) listener.appended(position[0], entry);
+                position[0]++;
+            });
+        }
+    }
+
+    private void replayingAll() {
+        for (Listener listener : listeners) {
+            try {
+                replaying(listener);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Queues a record for the background writer and returns at once, so the estimation never
+     * waits for the disk. Records that pile up while a write is in progress go to the disk
+     * together in the next one.
+     *
+     * @return future completed once the record is in the log (and synced, per the policy)
+     */
+    public CompletableFuture<Void> appendAsync(JSONObject entry) {
+        Pending pending = new Pending(entry, new CompletableFuture<>());
+
+        synchronized (writeQueue) {
+            startWriter();
+            writeQueue.add(pending);
+            lastQueued = pending.written();
+        }
+        return pending.written();
+    }
+
+    /**
+     * Waits until every record queued so far is written.
+     */
+    public void flush(long timeoutMs) {
+        CompletableFuture<Void> last;
+        synchronized (writeQueue) {
+            last = lastQueued;
+        }
+
+        try {
+            last.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            System.out.println("История: не все записи сохранены: " + e);
+        }
+    }
+
+    private void startWriter() {
+        if (writer != null) return;
+
+        writer = new Thread(this::writeLoop, "history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+
+        while (true) {
+            try {
+                Pending first = writeQueue.poll(PERIODIC_SYNC_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // затишье: досинхронизируем то, что PERIODIC оставил в кэше ОС
+                    syncIfDirty();
+                    continue;
+                }
+
+                batch.add(first);
+                writeQueue.drainTo(batch, MAX_GROUP_COMMIT - 1);
+
+                List<JSONObject> entries = new ArrayList<>(batch.size());
+                for (Pending pending : batch) entries.add(pending.entry());
+
+                try {
+                    appendAll(entries);
+                    batch.forEach(pending -> pending.written().complete(null));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    batch.forEach(pending -> pending.written().completeExceptionally(e));
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private synchronized void syncIfDirty() {
+        if (live == null || !live.isDirty()) return;
+        try {
+            sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void sync() throws IOException {
+        live.sync();
+        lastSync = System.currentTimeMillis();
+    }
+
+    /**
+     * Number of entries in all segments, without reading any of them.
+     */
+    public synchronized int size() throws IOException {
+        ensureOpen();
+        return totalSize();
+    }
+
+    private int totalSize() {
+        int size = 0;
+        for (HistorySegment segment : segments.values()) size += segment.size();
+        return size;
+    }
+
+    /**
+     * Reads one entry (0 is the oldest). Only its own segment is touched: a line of the current
+     * log, or the body of one archive. Fails if the configuration of the entry is corrupted.
+     */
+    public synchronized JSONObject get(int position) throws IOException {
+        ensureOpen();
+        Located located = locate(position);
+        JSONObject entry = configurations.expanding(located.segment().get(located.position()));
+        if (entry == null) throw new IOException("History entry " + position + " has no configuration");
+        return entry;
+    }
+
+    /**
+     * Timestamp and result of one entry, from the index or the archive header; nothing is
+     * decompressed.
+     */
+    public synchronized HistoryIndex.Summary summary(int position) throws IOException {
+        ensureOpen();
+        Located located = locate(position);
+        return located.segment().summary(located.position());
+    }
+
+    private record Located(HistorySegment segment, int position) {}
+
+    private Located locate(int position) {
+        int local = position;
+        for (HistorySegment segment : segments.values()) {
+            if (local >= 0 && local < segment.size()) return new Located(segment, local);
+            local -= segment.size();
+        }
+        throw new IndexOutOfBoundsException("History entry " + position);
+    }
+
+    /**
+     * Streams all records from the oldest to the newest, one segment at a time, without loading
+     * the whole history into memory. A line that cannot be parsed, or whose configuration is
+     * corrupted, is skipped.
+     */
+    public void forEach(Consumer<JSONObject> action) throws IOException {
+        List<HistorySegment> snapshot;
+        ConfigurationStore store;
+        synchronized (this) {
+            ensureOpen();
+            snapshot = new ArrayList<>(segments.values());
+            store = configurations;
+        }
+
+        for (HistorySegment segment : snapshot) {
+            segment.forEach(record -> {
+                JSONObject entry = store.expanding(record);
+                if (entry != null) action.accept(entry);
+            });
+        }
+    }
+
+    /**
+     * Removes the whole history.
+     */
+    public void clear() throws IOException {
+        // то, что ещё в очереди, тоже относится к очищаемой истории
+        flush(SHUTDOWN_FLUSH_MS);
+        clearingSegments();
+    }
+
+    private synchronized void clearingSegments() throws IOException {
+        FileLock lock = lockingHistory();
+        try {
+            Iterator<HistorySegment> iterator = segments.values().iterator();
+            while (iterator.hasNext()) {
+                HistorySegment segment = iterator.next();
+                if (segment == live) continue;
+
+                segment.delete();
+                iterator.remove();
+            }
+            live.truncate();
+            configurations.clear();
+            bumpingGeneration();
+        } finally {
+            lock.release();
+        }
+
+        for (Listener listener : listeners) listener.reset();
+    }
+
+    public synchronized void close() {
+        if (tailer != null) tailer.interrupt();
+        if (live == null) return;
+
+        for (HistorySegment segment : segments.values()) segment.close();
+        segments.clear();
+        live = null;
+        configurations.close();
+        configurations = null;
+
+        try {
+            lockChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        lockChannel = null;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (live != null) return;
+
+        Files.createDirectories(historyDir);
+        if (lockChannel == null) {
+            lockChannel = FileChannel.open(historyDir.resolve(LOCK_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        FileLock lock = lockChannel.lock();
+        try {
+            if (configurations == null) configurations = ConfigurationStore.open(historyDir.resolve(CONFIGURATIONS_NAME));
+            migrateLegacy();
+            splittingLog();
+            loadingSegments();
+            applyRetention();
+            generation = readingGeneration();
+        } finally {
+            lock.release();
+        }
+        // после повторного открытия слушатели получают историю заново
+        replayingAll();
+    }
+
+    /**
+     * Takes the lock shared by all instances writing to the folder and catches up with what
+     * they did since this instance last held it.
+     */
+    private FileLock lockingHistory() throws IOException {
+        ensureOpen();
+
+        FileLock lock = lockChannel.lock();
+        try {
+            catchingUp();
+        } catch (IOException | RuntimeException e) {
+            lock.release();
+            throw e;
+        }
+        return lock;
+    }
+
+    private void catchingUp() throws IOException {
+        if (readingGeneration() != generation) {
+            // другой экземпляр закрыл месяц, очистил или сократил историю: сегменты открываются заново
+            for (HistorySegment segment : segments.values()) segment.close();
+            segments.clear();
+            live = null;
+
+            configurations.reloading();
+            loadingSegments();
+            generation = readingGeneration();
+            replayingAll();
+            return;
+        }
+
+        int known = live.size();
+        live.refresh();
+        if (live.size() == known || listeners.isEmpty()) return;
+
+        // только новые строки, записанные другими экземплярами
+        List<JSONObject> added = new ArrayList<>(live.size() - known);
+        for (int i = known; i < live.size(); i++) added.add(live.get(i));
+        notifyingAppended(totalSize() - live.size() + known, added);
+    }
+
+    /**
+     * Picks up what other instances wrote; called by the tailer when the folder changes.
+     */
+    public synchronized void refresh() throws IOException {
+        lockingHistory().release();
+    }
+
+    /**
+     * Starts following the folder for records written by other instances.
+     */
+    public synchronized void watch() {
+        if (tailer != null) return;
+
+        tailer = new Thread(this::tailLoop, "history-tailer");
+        tailer.setDaemon(true);
+        tailer.start();
+    }
+
+    private void tailLoop() {
+        try (WatchService watcher = historyDir.getFileSystem().newWatchService()) {
+            Files.createDirectories(historyDir);
+            historyDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+
+            while (true) {
+                WatchKey key = watcher.take();
+                // одна запись даёт несколько событий подряд — обрабатываем их разом
+                Thread.sleep(TAIL_DEBOUNCE_MS);
+
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    String name = String.valueOf(event.context());
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.startsWith(SEGMENT_PREFIX)
+                        || name.equals(LOCK_NAME)) {
+                        changed = true;
+                    }
+                }
+                if (!key.reset()) return;
+
+                if (changed) {
+                    try {
+                        refresh();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // хранилище закрыто
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private long readingGeneration() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining()) {
+            if (lockChannel.read(buffer, buffer.position()) < 0) return 0;
+        }
+        return buffer.getLong(0);
+    }
+
+    private void bumpingGeneration() throws IOException {
+        generation = readingGeneration() + 1;
+
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, generation);
+        while (buffer.hasRemaining()) lockChannel.write(buffer, buffer.position());
+    }
+
+    /**
+     * Opens the segments found in the history folder. A month that has both an archive and a
+     * log was archived by a run that could not delete the log: the archive wins. Logs of past
+     * months are archived now; the latest log stays writable unless its month is over.
+     */
+    private void loadingSegments() throws IOException {
+        TreeMap<YearMonth, Path> archives = new TreeMap<>();
+        TreeMap<YearMonth, Path> logs = new TreeMap<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(historyDir, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches()) continue;
+
+                YearMonth month = YearMonth.parse(matcher.group(1));
+                if (LOG_SUFFIX.equals(matcher.group(2))) logs.put(month, file);
+                else archives.put(month, file);
+            }
+        }
+
+        for (Map.Entry<YearMonth, Path> archive : archives.entrySet()) {
+            try {
+                segments.put(archive.getKey(), ArchivedSegment.open(archive.getKey(), archive.getValue()));
+            } catch (IOException e) {
+                // повреждённый архив не удаляем; если рядом остался лог, месяц берётся из него
+                e.printStackTrace();
+                continue;
+            }
+
+            Path log = logs.remove(archive.getKey());
+            if (log != null) deletingLog(log);
+        }
+
+        YearMonth current = YearMonth.now();
+        for (Map.Entry<YearMonth, Path> log : logs.entrySet()) {
+            LiveSegment segment = LiveSegment.open(log.getKey(), log.getValue());
+            segments.put(segment.month(), segment);
+
+            boolean latest = log.getKey().equals(logs.lastKey());
+            if (latest && !log.getKey().isBefore(current)) {
+                live = segment;
+                continue;
+            }
+            try {
+                archiving(segment);
+            } catch (IOException e) {
+                // месяц остаётся логом только для чтения, сжатие повторится при следующем открытии
+                e.printStackTrace();
+            }
+        }
+
+        if (live == null) {
+            live = LiveSegment.open(current, logPathFor(current));
+            segments.put(current, live);
+        }
+    }
+
+    /**
+     * Closes the current segment and starts the one for {@code month}. If archiving fails the
+     * current segment stays live and open, so the next append tries again.
+     */
+    private void rollingOver(YearMonth month) throws IOException {
+        LiveSegment next = LiveSegment.open(month, logPathFor(month));
+        try {
+            archiving(live);
+        } catch (IOException | RuntimeException e) {
+            next.delete();
+            throw e;
+        }
+        live = next;
+        segments.put(month, live);
+        applyRetention();
+    }
+
+    /**
+     * Compresses a finished month and deletes its log. An empty month leaves no archive.
+     * Records of earlier versions still holding the whole configuration are compacted here.
+     * The log is closed and replaced only once the archive is written: if writing fails, the
+     * segment is left as it was.
+     */
+    private void archiving(LiveSegment segment) throws IOException {
+        List<JSONObject> records = new ArrayList<>(segment.size());
+        segment.forEach(records::add);
+        List<JSONObject> entries = compactingAll(records);
+
+        if (entries.isEmpty()) {
+            segments.remove(segment.month());
+        } else {
+            Path archivePath = historyDir.resolve(SEGMENT_PREFIX + segment.month() + ArchivedSegment.FILE_SUFFIX);
+            segments.put(segment.month(), ArchivedSegment.write(segment.month(), archivePath, entries));
+            System.out.println("История за " + segment.month() + " сжата: " + entries.size() + " записей");
+        }
+        segment.close();
+        deletingLog(segment.logPath());
+        bumpingGeneration();
+    }
+
+    /**
+     * Deletes a log and its index. A file still mapped cannot be deleted on Windows; it is left
+     * for the next launch, where the archive of the same month takes precedence.
+     */
+    private static void deletingLog(Path log) {
+        try {
+            Files.deleteIfExists(HistoryIndex.indexPathFor(log));
+            Files.deleteIfExists(log);
+        } catch (IOException e) {
+            System.out.println("История: " + log + " будет удалён при следующем запуске");
+        }
+    }
+
+    /**
+     * Deletes the archives of months outside the retention period.
+     */
+    private void applyRetention() {
+        if (retentionMonths <= 0) return;
+        YearMonth oldestKept = YearMonth.now().minusMonths(retentionMonths - 1);
+        boolean removed = false;
+
+        Iterator<HistorySegment> iterator = segments.values().iterator();
+        while (iterator.hasNext()) {
+            HistorySegment segment = iterator.next();
+            if (segment == live || !segment.month().isBefore(oldestKept)) continue;
+
+            try {
+                segment.delete();
+                iterator.remove();
+                removed = true;
+                System.out.println("История за " + segment.month() + " удалена по сроку хранения");
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (!removed) return;
+        try {
+            bumpingGeneration();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        // позиции сдвинулись — производные представления строятся заново
+        replayingAll();
+    }
+
+    private List<JSONObject> compactingAll(List<JSONObject> entries) throws IOException {
+        List<JSONObject> records = new ArrayList<>(entries.size());
+        for (JSONObject entry : entries) records.add(configurations.compacting(entry));
+        return records;
+    }
+
+    private Path logPathFor(YearMonth month) {
+        return historyDir.resolve(SEGMENT_PREFIX + month + LOG_SUFFIX);
+    }
+
+    /**
+     * Month an entry belongs to, by its timestamp; an entry without one belongs to the current month.
+     */
+    private static YearMonth monthOf(JSONObject entry) {
+        long timestamp = HistoryIndex.parseTimestamp(entry.optString("timestamp", null));
+        if (timestamp == HistoryIndex.NO_TIMESTAMP) return YearMonth.now();
+        return YearMonth.from(LocalDateTime.ofEpochSecond(timestamp, 0, ZoneOffset.UTC));
+    }
+
+    /**
+     * Converts {@code history.json} (a pretty-printed array) into the single log. The log is
+     * written to a temporary file and moved in place atomically, then the old file is renamed,
+     * so an interrupted migration simply runs again.
+     */
+    private void migrateLegacy() throws IOException {
+        if (!Files.exists(legacyPath)) return;
+
+        Path migrated = legacyPath.resolveSibling(legacyPath.getFileName() + MIGRATED_SUFFIX);
+        if (Files.exists(logPath)) {
+            // лог уже перенесён, но старый файл не успели переименовать
+            Files.move(legacyPath, migrated, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
+        JSONArray historyArray;
+        try {
+            String content = Files.readString(legacyPath, StandardCharsets.UTF_8).trim();
+            historyArray = content.isEmpty() ? new JSONArray() : new JSONArray(content);
+        } catch (Exception e) {
+            // повреждённый массив не переносим, но и не удаляем
+            e.printStackTrace();
+            historyArray = new JSONArray();
+        }
+
+        List<JSONObject> entries = new ArrayList<>(historyArray.length());
+        for (int i = 0; i < historyArray.length(); i++) {
+            JSONObject entry = historyArray.optJSONObject(i);
+            if (entry != null) entries.add(entry);
+        }
+
+        writingLog(logPath, entries);
+        Files.move(legacyPath, migrated, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("История перенесена в " + logPath + ": " + entries.size() + " записей");
+    }
+
+    /**
+     * Splits the single {@code history.jsonl} of earlier versions into monthly segments. Every
+     * segment is written whole and atomically, so an interrupted split simply runs again.
+     */
+    private void splittingLog() throws IOException {
+        if (!Files.exists(logPath)) return;
+
+        TreeMap<YearMonth, List<JSONObject>> months = new TreeMap<>();
+        LiveSegment.readLog(logPath, Integer.MAX_VALUE, entry -> months.computeIfAbsent(monthOf(entry), _ -> new ArrayList<>()).add(entry));
+
+        YearMonth current = YearMonth.now();
+        for (Map.Entry<YearMonth, List<JSONObject>> month : months.entrySet()) {
+            if (month.getKey().isBefore(current)) {
+                Path archivePath = historyDir.resolve(SEGMENT_PREFIX + month.getKey() + ArchivedSegment.FILE_SUFFIX);
+                ArchivedSegment.write(month.getKey(), archivePath, compactingAll(month.getValue()));
+            } else {
+                Path segmentLog = logPathFor(month.getKey());
+                Files.deleteIfExists(HistoryIndex.indexPathFor(segmentLog));
+                writingLog(segmentLog, compactingAll(month.getValue()));
+            }
+        }
+
+        Files.deleteIfExists(HistoryIndex.indexPathFor(logPath));
+        Files.move(logPath, logPath.resolveSibling(logPath.getFileName() + MIGRATED_SUFFIX),
+            StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("История разбита по месяцам: " + months.size() + " сегментов");
+    }
+
+    private static void writingLog(Path target, List<JSONObject> entries) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (JSONObject entry : entries) {
+                ByteBuffer line = ByteBuffer.wrap((entry.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+                while (line.hasRemaining()) out.write(line);
+            }
+            out.force(true);
+        }
+
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,196 @@
+package history;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.json.JSONObject;
+
+/**
+ * Writable month of history: a JSON Lines log with its {@link HistoryIndex}.
+ * Not thread-safe, {@link HistoryStore} serializes access.
+ */
+final class LiveSegment implements HistorySegment {
+
+    private final YearMonth month;
+    private final Path logPath;
+
+    private FileChannel channel;
+    private HistoryIndex index;
+    private boolean dirty;
+
+    private LiveSegment(YearMonth month, Path logPath) {
+        this.month = month;
+        this.logPath = logPath;
+    }
+
+    /**
+     * Opens (or creates) the log, cutting off a torn last line and bringing the index up to date.
+     */
+    static LiveSegment open(YearMonth month, Path logPath) throws IOException {
+        LiveSegment segment = new LiveSegment(month, logPath);
+
+        Files.createDirectories(logPath.getParent());
+        segment.channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        truncateTornTail(segment.channel);
+        segment.channel.position(segment.channel.size());
+        segment.index = HistoryIndex.open(logPath, segment.channel);
+
+        return segment;
+    }
+
+    Path logPath() {
+        return logPath;
+    }
+
+    @Override
+    public YearMonth month() {
+        return month;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Writes the records with one write; they reach the index only once they are in the log.
+     */
+    void appendAll(List<JSONObject> entries) throws IOException {
+        byte[][] lines = new byte[entries.size()][];
+        int total = 0;
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = entries.get(i).toString().getBytes(StandardCharsets.UTF_8);
+            total += lines[i].length + 1;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (byte[] line : lines) buffer.put(line).put((byte) '\n');
+        buffer.flip();
+
+        long offset = channel.position();
+        while (buffer.hasRemaining()) channel.write(buffer);
+
+        for (int i = 0; i < lines.length; i++) {
+            index.append(offset, lines[i], entries.get(i));
+            offset += lines[i].length + 1;
+        }
+        dirty = true;
+    }
+
+    /**
+     * Picks up the records other processes appended; the next write goes after them.
+     */
+    void refresh() throws IOException {
+        index.refresh(channel);
+        channel.position(channel.size());
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void sync() throws IOException {
+        channel.force(false);
+        dirty = false;
+    }
+
+    @Override
+    public JSONObject get(int position) throws IOException {
+        byte[] line = HistoryIndex.readLine(channel, index.offset(position), index.length(position));
+        return new JSONObject(new String(line, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public HistoryIndex.Summary summary(int position) {
+        return index.summary(position);
+    }
+
+    /**
+     * Streams the indexed records; lines another instance appended after them are left for the
+     * next {@link #refresh}.
+     */
+    @Override
+    public void forEach(Consumer<JSONObject> action) throws IOException {
+        readLog(logPath, index.size(), action);
+    }
+
+    /**
+     * Streams the first {@code limit} records of a log line by line; a line that is not valid
+     * JSON (e.g. a record torn by a crash) is skipped.
+     */
+    static void readLog(Path logPath, int limit, Consumer<JSONObject> action) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(logPath, StandardCharsets.UTF_8)) {
+            String line;
+            int read = 0;
+            while (read < limit && (line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+
+                JSONObject entry;
+                try {
+                    entry = new JSONObject(line);
+                } catch (Exception e) {
+                    continue;
+                }
+                action.accept(entry);
+                read++;
+            }
+        }
+    }
+
+    void truncate() throws IOException {
+        channel.truncate(0);
+        channel.force(false);
+        index.reset();
+        dirty = false;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (dirty) sync();
+            index.close();
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(HistoryIndex.indexPathFor(logPath));
+        Files.deleteIfExists(logPath);
+    }
+
+    /**
+     * Cuts off a record left without its line break by a crash, otherwise the next append would
+     * be glued to it.
+     */
+    private static void truncateTornTail(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long end = size;
+        ByteBuffer one = ByteBuffer.allocate(1);
+
+        while (end > 0) {
+            one.clear();
+            channel.read(one, end - 1);
+            if (one.get(0) == '\n') break;
+            end--;
+        }
+
+        if (end < size) {
+            System.out.println("История: отброшена недописанная запись (" + (size - end) + " байт)");
+            channel.truncate(end);
+        }
+    }
+}
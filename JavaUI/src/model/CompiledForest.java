@@ -0,0 +1,24 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Forest compiled into bytecode by {@link ForestCompiler}: every tree is a method made of
+ * nested comparisons, so the JIT can inline and optimize it like hand-written code.
+ */
+public interface CompiledForest {
+
+    /**
+     * Adds the leaf class fractions of every tree reached by the row to {@code scores}.
+     */
+    void accumulate(double[] row, double[] scores);
+
+    /**
+     * Predicts the class index, same result as {@link ForestModel#predict(double[], double[])}.
+     */
+    default int predict(double[] row, double[] scores) {
+        Arrays.fill(scores, 0);
+        accumulate(row, scores);
+        return ForestModel.argmax(scores, scores.length);
+    }
+}
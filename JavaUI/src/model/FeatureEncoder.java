@@ -0,0 +1,94 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+/**
+ * Feature names, LabelEncoder classes and estimation labels of an exported model, shared by
+ * {@link ForestModel} and {@link MappedForestModel}. Turns a request into an encoded feature row.
+ */
+public final class FeatureEncoder {
+
+    public final String[] featureNames;
+    /** Encoder classes per feature, null for numeric features. */
+    public final String[][] categories;
+    public final String[] labels;
+    /**
+     * Encoded value of a feature the form does not have (price), NaN for a feature every
+     * request must carry. Exported from {@code FORM_ABSENT_FEATURES} of {@code trainingAI.py}.
+     */
+    public final double[] defaults;
+
+    private final Map<String, Integer>[] categoryIndex;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public FeatureEncoder(String[] featureNames, String[][] categories, String[] labels, double[] defaults) {
+        this.featureNames = featureNames;
+        this.categories = categories;
+        this.labels = labels;
+        this.defaults = defaults;
+
+        categoryIndex = new Map[featureNames.length];
+        for (int f = 0; f < featureNames.length; f++) {
+            if (categories[f] == null) continue;
+            categoryIndex[f] = new HashMap<>();
+            for (int i = 0; i < categories[f].length; i++) {
+                categoryIndex[f].put(categories[f][i], i);
+            }
+        }
+    }
+
+    public int featureCount() {
+        return featureNames.length;
+    }
+
+    public int classCount() {
+        return labels.length;
+    }
+
+    public String label(int classIndex) {
+        return labels[classIndex];
+    }
+
+    /**
+     * Encodes a request (the JSON built by {@code WindowMain.parsingData}) into a feature row.
+     * Unknown categories map to the first known class, as in {@code TechnoAssistant.predict_loaded}.
+     * An absent feature gets its exported default (price); any other absent feature, or a
+     * numeric value that is not a number, fails with {@link IllegalArgumentException}, where
+     * {@code predict_loaded} raises a {@code ValueError}.
+     */
+    public double[] encode(JSONObject request) {
+        double[] row = new double[featureNames.length];
+        encode(request, row);
+        return row;
+    }
+
+    public void encode(JSONObject request, double[] row) {
+        for (int f = 0; f < featureNames.length; f++) {
+            Object value = request.opt(featureNames[f]);
+
+            if (value == null) {
+                if (Double.isNaN(defaults[f])) throw new IllegalArgumentException("Missing feature: " + featureNames[f]);
+                row[f] = defaults[f];
+            } else if (categoryIndex[f] != null) {
+                Integer code = (value == JSONObject.NULL) ? null : categoryIndex[f].get(value.toString());
+                row[f] = (code == null) ? 0 : code;
+            } else {
+                double number = (value instanceof Number n) ? n.doubleValue() : Double.NaN;
+                if (value instanceof String s) {
+                    try {
+                        number = Double.parseDouble(s.trim());
+                    } catch (NumberFormatException ignored) {
+                        // остаётся NaN — ошибка ниже
+                    }
+                }
+                if (Double.isNaN(number)) {
+                    throw new IllegalArgumentException("Feature " + featureNames[f] + " is not a number: " + value);
+                }
+                row[f] = number;
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package model;
+
+/**
+ * Batch prediction over a columnar block of encoded rows: {@code block[feature * rows + row]},
+ * e.g. 1024 rows of the 15 features. Uses the Vector API kernel when the
+ * {@code jdk.incubator.vector} module is present (run with {@code --add-modules jdk.incubator.vector}),
+ * otherwise a scalar kernel with the same results.
+ */
+public final class ForestBatch {
+
+    public static final int BLOCK_ROWS = 1024;
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL_CLASS = "model.VectorBatchKernel";
+
+    /**
+     * Adds the leaf class fractions of every tree to {@code scores[row * classCount + class]}.
+     */
+    public interface Kernel {
+        void accumulate(ForestModel forest, float[] block, int rows, double[] scores);
+    }
+
+    public static final Kernel SCALAR = ForestBatch::accumulateScalar;
+
+    private static final Kernel VECTOR = loadVectorKernel();
+
+    private ForestBatch() {}
+
+    private static Kernel loadVectorKernel() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) return null;
+
+        try {
+            return (Kernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+        } catch (Throwable e) {
+            System.out.println("Vector API недоступен, используется скалярный расчёт: " + e);
+            return null;
+        }
+    }
+
+    public static boolean isVectorized() {
+        return VECTOR != null;
+    }
+
+    /**
+     * Vector API kernel, or null when the module is not available.
+     */
+    public static Kernel vectorKernel() {
+        return VECTOR;
+    }
+
+    public static Kernel kernel() {
+        return (VECTOR != null) ? VECTOR : SCALAR;
+    }
+
+    /**
+     * Copies {@code count} encoded rows starting at {@code from} into a columnar float block.
+     * Floats lose nothing: sklearn compares features as float32 anyway.
+     */
+    public static float[] toColumns(double[][] rows, int from, int count, int featureCount) {
+        float[] block = new float[featureCount * count];
+        for (int f = 0; f < featureCount; f++) {
+            int base = f * count;
+            for (int r = 0; r < count; r++) {
+                block[base + r] = (float) rows[from + r][f];
+            }
+        }
+        return block;
+    }
+
+    public static int[] predict(ForestModel forest, float[] block, int rows) {
+        int[] out = new int[rows];
+        predict(kernel(), forest, block, rows, out);
+        return out;
+    }
+
+    /**
+     * Predicts class indices of all rows of the block into {@code out}.
+     */
+    public static void predict(Kernel kernel, ForestModel forest, float[] block, int rows, int[] out) {
+        int classCount = forest.classCount();
+        double[] scores = new double[rows * classCount];
+
+        kernel.accumulate(forest, block, rows, scores);
+
+        for (int r = 0; r < rows; r++) {
+            int base = r * classCount;
+            int best = 0;
+            for (int c = 1; c < classCount; c++) {
+                if (scores[base + c] > scores[base + best]) best = c;
+            }
+            out[r] = best;
+        }
+    }
+
+    /**
+     * Tree-by-tree walk so that the nodes of one tree stay in cache for the whole block.
+     */
+    static void accumulateScalar(ForestModel forest, float[] block, int rows, double[] scores) {
+        accumulateScalar(forest, block, rows, 0, rows, scores);
+    }
+
+    static void accumulateScalar(ForestModel forest, float[] block, int rows, int fromRow, int toRow,
+                                 double[] scores) {
+        int classCount = forest.classCount();
+        int[] feature = forest.feature;
+        float[] threshold = forest.thresholdFloat;
+
+        for (int root : forest.treeRoots) {
+            for (int r = fromRow; r < toRow; r++) {
+                int node = root;
+                while (feature[node] >= 0) {
+                    node = (block[feature[node] * rows + r] <= threshold[node]) ? forest.left[node] : forest.right[node];
+                }
+
+                int offset = forest.valueOffset[node];
+                int base = r * classCount;
+                for (int c = 0; c < classCount; c++) scores[base + c] += forest.values[offset + c];
+            }
+        }
+    }
+}
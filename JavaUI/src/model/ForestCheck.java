@@ -0,0 +1,271 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONObject;
+
+import utils.ProjectPaths;
+
+/**
+ * Correctness check and throughput comparison of the in-JVM forest implementations on
+ * {@code PythonAI/dataset/dataset.csv}. Reference labels come from
+ * {@code predictions_RF_<version>.txt} written by {@code exportModel.py}.
+ * <p>
+ * Usage: {@code java model.ForestCheck [version]}
+ */
+public final class ForestCheck {
+
+    private static final int WARMUP_PASSES = 200;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    /** Encoded row -> predicted class index. */
+    public interface RowPredictor {
+        int predict(double[] row);
+    }
+
+    private ForestCheck() {}
+
+    public static void main(String[] args) throws Exception {
+        String version = ForestModel.normalizeVersion(args.length > 0 ? args[0] : null);
+        ForestModel forest = ForestModel.load(ForestModel.modelFile(version).toPath());
+
+        File datasetFile = new File(ProjectPaths.pythonAiDir(), "dataset/dataset.csv");
+        double[][] rows = readDataset(forest, datasetFile.toPath());
+        System.out.println("Модель " + version + ": " + forest.treeCount() + " деревьев, "
+            + forest.feature.length + " узлов; строк в dataset.csv: " + rows.length);
+
+        double[] scores = new double[forest.classCount()];
+        RowPredictor interpreter = row -> forest.predict(row, scores);
+        RowPredictor bytecode = null;
+        try {
+            CompiledForest compiled = ForestCompiler.compile(forest);
+            bytecode = row -> compiled.predict(row, scores);
+        } catch (RuntimeException | LinkageError e) {
+            // ClassFile API нет в этой JDK или дерево слишком велико — проверяем остальное
+            System.out.println("Байткод: не удалось скомпилировать модель: " + e);
+        }
+
+        int[] expected = readExpected(forest, version, rows.length);
+        boolean ok = true;
+        if (expected != null) {
+            ok &= check("Интерпретатор vs Python", interpreter, rows, expected);
+            if (bytecode != null) ok &= check("Байткод vs Python", bytecode, rows, expected);
+        } else {
+            System.out.println("predictions_RF_" + version + ".txt не найден — сравнение только с интерпретатором");
+        }
+        if (bytecode != null) ok &= check("Байткод vs интерпретатор", bytecode, rows, predictAll(interpreter, rows));
+
+        ForestModel.Prediction prediction = new ForestModel.Prediction();
+        RowPredictor earlyExit = row -> forest.predictEarlyExit(row, scores, prediction).classIndex;
+        ok &= check("Досрочная остановка vs интерпретатор", earlyExit, rows, predictAll(interpreter, rows));
+
+        long treesEvaluated = 0;
+        for (double[] row : rows) treesEvaluated += forest.predictEarlyExit(row, scores, prediction).treesEvaluated;
+        System.out.printf("Досрочная остановка: в среднем %.1f из %d деревьев%n",
+            (double) treesEvaluated / rows.length, forest.treeCount());
+
+        File mappedFile = MappedForestModel.modelFile(version);
+        RowPredictor quantized = null;
+        if (mappedFile.isFile()) {
+            MappedForestModel mapped = MappedForestModel.open(mappedFile.toPath());
+            quantized = row -> mapped.predict(row, scores);
+            ok &= check("Квантованная модель vs интерпретатор", quantized, rows, predictAll(interpreter, rows));
+        } else {
+            System.out.println(mappedFile.getName() + " не найден — запустите model.ForestConverter " + version);
+        }
+
+        benchmark("Интерпретатор", interpreter, rows);
+        benchmark("Досрочная остановка", earlyExit, rows);
+        if (bytecode != null) benchmark("Байткод", bytecode, rows);
+        if (quantized != null) benchmark("Квантованная модель", quantized, rows);
+
+        float[] block = toBlock(forest, rows, ForestBatch.BLOCK_ROWS);
+        int[] blockExpected = new int[ForestBatch.BLOCK_ROWS];
+        for (int r = 0; r < blockExpected.length; r++) blockExpected[r] = interpreter.predict(rows[r % rows.length]);
+
+        ok &= checkBatch("Пакет (скаляр)", ForestBatch.SCALAR, forest, block, blockExpected);
+        benchmarkBatch("Пакет (скаляр)", ForestBatch.SCALAR, forest, block);
+        if (ForestBatch.isVectorized()) {
+            ok &= checkBatch("Пакет (Vector API)", ForestBatch.vectorKernel(), forest, block, blockExpected);
+            benchmarkBatch("Пакет (Vector API)", ForestBatch.vectorKernel(), forest, block);
+        } else {
+            System.out.println("Пакет (Vector API): недоступен, запустите с --add-modules jdk.incubator.vector");
+        }
+
+        if (!ok) System.exit(1);
+    }
+
+    /**
+     * Reads dataset.csv and encodes every row with the model's encoders. Empty categorical
+     * cells become "nan", as pandas' {@code astype(str)} does during training.
+     */
+    public static double[][] readDataset(ForestPredictor forest, Path path) throws IOException {
+        List<double[]> rows = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            List<String> header = splitCsvLine(reader.readLine());
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                List<String> cells = splitCsvLine(line);
+
+                JSONObject request = new JSONObject();
+                for (int i = 0; i < header.size() && i < cells.size(); i++) {
+                    String cell = cells.get(i);
+                    request.put(header.get(i), cell.isEmpty() ? "nan" : cell);
+                }
+                rows.add(forest.encoder().encode(request));
+            }
+        }
+
+        return rows.toArray(new double[0][]);
+    }
+
+    /**
+     * Splits one CSV line written by Python's csv module (double quotes, "" escapes).
+     */
+    public static List<String> splitCsvLine(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (ch == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(ch);
+            }
+        }
+
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    private static int[] readExpected(ForestModel forest, String version, int count) throws IOException {
+        File file = new File(ForestModel.modelFile(version).getParentFile(), "predictions_RF_" + version + ".txt");
+        if (!file.isFile()) return null;
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        if (lines.size() < count) throw new IOException("В " + file + " меньше строк, чем в dataset.csv");
+
+        int[] expected = new int[count];
+        for (int i = 0; i < count; i++) {
+            expected[i] = List.of(forest.labels).indexOf(lines.get(i).trim());
+        }
+        return expected;
+    }
+
+    public static int[] predictAll(RowPredictor predictor, double[][] rows) {
+        int[] result = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) result[i] = predictor.predict(rows[i]);
+        return result;
+    }
+
+    public static boolean check(String name, RowPredictor predictor, double[][] rows, int[] expected) {
+        int[] actual = predictAll(predictor, rows);
+
+        int mismatches = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (actual[i] != expected[i]) {
+                if (mismatches < 10) System.out.println("  строка " + (i + 1) + ": " + actual[i] + " != " + expected[i]);
+                mismatches++;
+            }
+        }
+
+        System.out.println(name + ": " + (mismatches == 0 ? "совпадает" : "расхождений " + mismatches)
+            + " (" + rows.length + " строк)");
+        return mismatches == 0;
+    }
+
+    /**
+     * Columnar block of {@code size} rows, repeating the dataset if it is shorter.
+     */
+    private static float[] toBlock(ForestModel forest, double[][] rows, int size) {
+        double[][] repeated = new double[size][];
+        for (int r = 0; r < size; r++) repeated[r] = rows[r % rows.length];
+        return ForestBatch.toColumns(repeated, 0, size, forest.featureCount());
+    }
+
+    private static boolean checkBatch(String name, ForestBatch.Kernel kernel, ForestModel forest,
+                                      float[] block, int[] expected) {
+        int[] actual = new int[expected.length];
+        ForestBatch.predict(kernel, forest, block, expected.length, actual);
+
+        int mismatches = 0;
+        for (int r = 0; r < expected.length; r++) if (actual[r] != expected[r]) mismatches++;
+
+        System.out.println(name + " vs интерпретатор: "
+            + (mismatches == 0 ? "совпадает" : "расхождений " + mismatches));
+        return mismatches == 0;
+    }
+
+    public static double benchmarkBatch(String name, ForestBatch.Kernel kernel, ForestModel forest, float[] block) {
+        int rows = ForestBatch.BLOCK_ROWS;
+        int[] out = new int[rows];
+
+        long sink = 0;
+        for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+            ForestBatch.predict(kernel, forest, block, rows, out);
+            sink += out[pass % rows];
+        }
+
+        long predicted = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            ForestBatch.predict(kernel, forest, block, rows, out);
+            sink += out[(int) (predicted % rows)];
+            predicted += rows;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+
+        double rowsPerSecond = predicted * 1e9 / elapsed;
+        System.out.printf("%s: %,.0f строк/с блоками по %d (контроль %d)%n", name, rowsPerSecond, rows, sink);
+        return rowsPerSecond;
+    }
+
+    /**
+     * Prints rows per second after a warm-up, so the JIT has compiled the hot path.
+     */
+    public static double benchmark(String name, RowPredictor predictor, double[][] rows) {
+        long sink = 0;
+        for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+            for (double[] row : rows) sink += predictor.predict(row);
+        }
+
+        long predicted = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (double[] row : rows) sink += predictor.predict(row);
+            predicted += rows.length;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+
+        double rowsPerSecond = predicted * 1e9 / elapsed;
+        System.out.printf("%s: %,.0f строк/с, %.2f мкс/строка (контроль %d)%n",
+            name, rowsPerSecond, 1e6 / rowsPerSecond, sink);
+        return rowsPerSecond;
+    }
+}
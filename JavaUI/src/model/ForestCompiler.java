@@ -0,0 +1,271 @@
+package model;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.classfile.Label;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDescs;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns a {@link ForestModel} into a hidden class implementing {@link CompiledForest}
+ * (ClassFile API, JDK 24+). Each tree becomes a static method of nested float32 comparisons
+ * ending in constant additions to the score array. Large subtrees are split out into their own
+ * methods so that no method exceeds the JIT's huge-method limit. A forest whose constants do
+ * not fit into one constant pool is split into several classes, each with a group of trees.
+ * One set of classes is generated per model version and reused.
+ */
+public final class ForestCompiler {
+
+    /** HotSpot does not JIT methods above 8000 bytes of bytecode (DontCompileHugeMethods). */
+    private static final int MAX_METHOD_BYTES = 7_000;
+    /** Constant pool slots per class: 65535 at most, doubles take two. */
+    private static final int MAX_CONSTANT_SLOTS = 65_000;
+    /** Slots of the entries every class has: its name, supertypes, constructor, attribute names. */
+    private static final int BASE_CONSTANT_SLOTS = 32;
+    /** A method of a subtree: its name, NameAndType and Methodref. */
+    private static final int METHOD_CONSTANT_SLOTS = 3;
+
+    private static final ClassDesc CD_COMPILED_FOREST = ClassDesc.of(CompiledForest.class.getName());
+    private static final MethodTypeDesc MTD_NODE = MethodTypeDesc.of(
+        ConstantDescs.CD_void, ConstantDescs.CD_double.arrayType(), ConstantDescs.CD_double.arrayType());
+
+    private static final Map<String, CompiledForest> compiled = new ConcurrentHashMap<>();
+
+    private ForestCompiler() {}
+
+    /** Trees of one generated class and the roots of all its methods. */
+    private record Part(List<Integer> treeRoots, List<Integer> methodRoots) {}
+
+    /** Forest split into several classes; each call runs over a large group of trees. */
+    private record Parts(CompiledForest[] parts) implements CompiledForest {
+        @Override
+        public void accumulate(double[] row, double[] scores) {
+            for (CompiledForest part : parts) part.accumulate(row, scores);
+        }
+    }
+
+    /**
+     * Returns the compiled forest for the model's version, generating the classes on first use.
+     *
+     * @throws IllegalStateException if a single tree is too large for a class
+     */
+    public static CompiledForest compile(ForestModel model) {
+        return compiled.computeIfAbsent(model.version, _ -> generate(model));
+    }
+
+    private static CompiledForest generate(ForestModel model) {
+        List<Part> parts = splittingIntoParts(model);
+        if (parts.size() == 1) return defining(model, parts.get(0), 0);
+
+        CompiledForest[] classes = new CompiledForest[parts.size()];
+        for (int i = 0; i < classes.length; i++) classes[i] = defining(model, parts.get(i), i);
+        return new Parts(classes);
+    }
+
+    /**
+     * Groups consecutive trees into classes, as many per class as its constant pool holds.
+     */
+    private static List<Part> splittingIntoParts(ForestModel model) {
+        int[] codeSize = estimateCodeSize(model);
+
+        List<Part> parts = new ArrayList<>();
+        List<Integer> trees = new ArrayList<>();
+        List<Integer> methods = new ArrayList<>();
+        Set<Long> constants = new HashSet<>();
+
+        for (int root : model.treeRoots) {
+            List<Integer> treeMethods = findMethodRoots(model, codeSize, root);
+            Set<Long> treeConstants = collectingConstants(model, root);
+
+            int added = 0;
+            for (long bits : treeConstants) if (!constants.contains(bits)) added++;
+
+            if (!trees.isEmpty()
+                && constantSlots(constants.size() + added, methods.size() + treeMethods.size()) > MAX_CONSTANT_SLOTS) {
+                parts.add(new Part(trees, methods));
+                trees = new ArrayList<>();
+                methods = new ArrayList<>();
+                constants = new HashSet<>();
+            }
+            if (trees.isEmpty() && constantSlots(treeConstants.size(), treeMethods.size()) > MAX_CONSTANT_SLOTS) {
+                throw new IllegalStateException("Tree at node " + root + " of forest " + model.version
+                    + " is too large to compile");
+            }
+
+            trees.add(root);
+            methods.addAll(treeMethods);
+            constants.addAll(treeConstants);
+        }
+
+        parts.add(new Part(trees, methods));
+        return parts;
+    }
+
+    private static int constantSlots(int doubles, int methods) {
+        return BASE_CONSTANT_SLOTS + 2 * doubles + METHOD_CONSTANT_SLOTS * methods;
+    }
+
+    /**
+     * Distinct double constants of a tree (thresholds and non-zero leaf fractions), by their
+     * bits: the class file builder stores each distinct value once.
+     */
+    private static Set<Long> collectingConstants(ForestModel model, int root) {
+        Set<Long> constants = new HashSet<>();
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            if (model.feature[node] >= 0) {
+                constants.add(Double.doubleToRawLongBits(model.threshold[node]));
+                stack.push(model.left[node]);
+                stack.push(model.right[node]);
+                continue;
+            }
+
+            int offset = model.valueOffset[node];
+            for (int c = 0; c < model.classCount(); c++) {
+                double value = model.values[offset + c];
+                if (value != 0) constants.add(Double.doubleToRawLongBits(value));
+            }
+        }
+        return constants;
+    }
+
+    private static CompiledForest defining(ForestModel model, Part part, int index) {
+        boolean[] isMethodRoot = new boolean[model.feature.length];
+        for (int root : part.methodRoots()) isMethodRoot[root] = true;
+
+        String className = ForestCompiler.class.getPackageName() + ".CompiledForest_"
+            + model.version.replaceAll("[^A-Za-z0-9]", "_") + "_" + index;
+        ClassDesc thisClass = ClassDesc.of(className);
+
+        byte[] bytes = ClassFile.of().build(thisClass, clb -> {
+            clb.withFlags(ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL | ClassFile.ACC_SUPER);
+            clb.withSuperclass(ConstantDescs.CD_Object);
+            clb.withInterfaceSymbols(CD_COMPILED_FOREST);
+
+            clb.withMethodBody(ConstantDescs.INIT_NAME, ConstantDescs.MTD_void, ClassFile.ACC_PUBLIC, cb -> cb
+                .aload(0)
+                .invokespecial(ConstantDescs.CD_Object, ConstantDescs.INIT_NAME, ConstantDescs.MTD_void)
+                .return_());
+
+            clb.withMethodBody("accumulate", MTD_NODE, ClassFile.ACC_PUBLIC, cb -> {
+                for (int root : part.treeRoots()) {
+                    cb.aload(1).aload(2).invokestatic(thisClass, nodeMethod(root), MTD_NODE);
+                }
+                cb.return_();
+            });
+
+            for (int root : part.methodRoots()) {
+                clb.withMethodBody(nodeMethod(root), MTD_NODE, ClassFile.ACC_PRIVATE | ClassFile.ACC_STATIC,
+                    cb -> emitNode(cb, thisClass, model, isMethodRoot, root, root));
+            }
+        });
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (CompiledForest) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+                .invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot define compiled forest " + className, e);
+        }
+    }
+
+    private static String nodeMethod(int node) {
+        return "node" + node;
+    }
+
+    /**
+     * Root of a tree plus every subtree that has to live in its own method: a method inlines its
+     * root and both children only while each child fits into half of {@link #MAX_METHOD_BYTES}.
+     */
+    private static List<Integer> findMethodRoots(ForestModel model, int[] codeSize, int treeRoot) {
+        int splitSize = (MAX_METHOD_BYTES - 32) / 2;
+
+        List<Integer> methodRoots = new ArrayList<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(treeRoot);
+
+        while (!queue.isEmpty()) {
+            int root = queue.poll();
+            methodRoots.add(root);
+
+            if (model.feature[root] < 0) continue;
+            for (int child : new int[] {model.left[root], model.right[root]}) {
+                if (codeSize[child] > splitSize) queue.add(child);
+            }
+        }
+        return methodRoots;
+    }
+
+    /**
+     * Emits {@code node} inside the method for {@code methodRoot}. Row is local 0, scores local 1.
+     */
+    private static void emitNode(CodeBuilder cb, ClassDesc thisClass, ForestModel model, boolean[] isMethodRoot,
+                                 int methodRoot, int node) {
+        if (node != methodRoot && isMethodRoot[node]) {
+            cb.aload(0).aload(1).invokestatic(thisClass, nodeMethod(node), MTD_NODE).return_();
+            return;
+        }
+
+        if (model.feature[node] < 0) {
+            int offset = model.valueOffset[node];
+            for (int c = 0; c < model.classCount(); c++) {
+                double value = model.values[offset + c];
+                if (value == 0) continue;
+
+                cb.aload(1)
+                  .loadConstant(Integer.valueOf(c))
+                  .dup2()
+                  .daload()
+                  .loadConstant(Double.valueOf(value))
+                  .dadd()
+                  .dastore();
+            }
+            cb.return_();
+            return;
+        }
+
+        // (double) (float) row[feature] <= threshold -> left, как в sklearn
+        Label right = cb.newLabel();
+        cb.aload(0)
+          .loadConstant(Integer.valueOf(model.feature[node]))
+          .daload()
+          .d2f()
+          .f2d()
+          .loadConstant(Double.valueOf(model.threshold[node]))
+          .dcmpg()
+          .ifgt(right);
+
+        emitNode(cb, thisClass, model, isMethodRoot, methodRoot, model.left[node]);
+        cb.labelBinding(right);
+        emitNode(cb, thisClass, model, isMethodRoot, methodRoot, model.right[node]);
+    }
+
+    /**
+     * Upper bound of the bytecode size of every subtree, computed bottom-up.
+     */
+    private static int[] estimateCodeSize(ForestModel model) {
+        int[] size = new int[model.feature.length];
+        for (int node = size.length - 1; node >= 0; node--) {
+            if (model.feature[node] < 0) {
+                size[node] = 10 * model.classCount() + 1;
+            } else {
+                // в sklearn дети всегда имеют больший индекс, чем родитель
+                size[node] = 16 + size[model.left[node]] + size[model.right[node]];
+            }
+        }
+        return size;
+    }
+}
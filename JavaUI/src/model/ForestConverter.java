@@ -0,0 +1,70 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import utils.ProjectPaths;
+
+/**
+ * Converts exported {@code model_RF_<version>.tamodel} files into the quantized, memory-mapped
+ * {@code .taqm} format and checks on {@code dataset.csv} that the predictions did not change.
+ * <p>
+ * Usage: {@code java model.ForestConverter [version ...]} (all exported versions by default)
+ */
+public final class ForestConverter {
+
+    private ForestConverter() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> versions = (args.length > 0) ? List.of(args) : exportedVersions();
+        if (versions.isEmpty()) {
+            System.out.println("Нет экспортированных моделей, сначала запустите exportModel.py");
+            System.exit(1);
+        }
+
+        boolean ok = true;
+        for (String version : versions) ok &= convert(version);
+        if (!ok) System.exit(1);
+    }
+
+    private static List<String> exportedVersions() throws IOException {
+        List<String> versions = new ArrayList<>();
+        File[] dirs = ProjectPaths.modelsDir().listFiles(File::isDirectory);
+        if (dirs == null) return versions;
+
+        for (File dir : dirs) {
+            if (ForestModel.modelFile(dir.getName()).isFile()) versions.add(dir.getName());
+        }
+        versions.sort(null);
+        return versions;
+    }
+
+    private static boolean convert(String version) throws IOException {
+        File source = ForestModel.modelFile(version);
+        File target = MappedForestModel.newModelFile(version);
+
+        ForestModel forest = ForestModel.load(source.toPath());
+        MappedForestModel.write(forest, target.toPath());
+
+        long start = System.nanoTime();
+        MappedForestModel mapped = MappedForestModel.open(target.toPath());
+        long openMicros = (System.nanoTime() - start) / 1000;
+
+        System.out.println(target + ": " + source.length() + " -> " + target.length() + " байт, открытие "
+            + openMicros + " мкс");
+
+        File datasetFile = new File(ProjectPaths.pythonAiDir(), "dataset/dataset.csv");
+        if (!datasetFile.isFile()) {
+            System.out.println("dataset.csv не найден — проверка предсказаний пропущена");
+            return true;
+        }
+
+        double[][] rows = ForestCheck.readDataset(forest, datasetFile.toPath());
+        double[] scores = new double[forest.classCount()];
+        int[] expected = ForestCheck.predictAll(row -> forest.predict(row, scores), rows);
+        return ForestCheck.check("Квантованная модель " + version + " vs исходная",
+            row -> mapped.predict(row, scores), rows, expected);
+    }
+}
@@ -0,0 +1,338 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.json.JSONObject;
+
+import utils.ProjectPaths;
+
+/**
+ * Random Forest loaded from the {@code .tamodel} file written by {@code PythonAI/helpers/exportModel.py}.
+ * All trees are flattened into shared primitive arrays, so a prediction walks plain arrays
+ * inside the JVM without any Python process and without allocating.
+ * Follows sklearn semantics: features are compared as float32, {@code x <= threshold} goes left,
+ * and the class is the argmax of the summed leaf class fractions.
+ */
+public class ForestModel implements ForestPredictor {
+
+    public static final int MAGIC = 0x5441464D; // "TAFM"
+    public static final int FORMAT_VERSION = 2;
+    public static final String FILE_EXTENSION = ".tamodel";
+    public static final String DEFAULT_VERSION = "v1.0.0";
+
+    /** Slack for rounding in the early-exit bound, far above the error of summing fractions. */
+    private static final double DECIDED_EPSILON = 1e-9;
+
+    public final String version;
+
+    public final String[] featureNames;
+    public final String[][] categories;
+    public final String[] labels;
+    /** Value of a feature absent from the form, NaN if it is required; see {@link FeatureEncoder#defaults}. */
+    public final double[] defaults;
+    public final FeatureEncoder encoder;
+
+    /** Index of the root node of each tree in the node arrays. */
+    public final int[] treeRoots;
+
+    /** Feature index per node, -1 for leaves. */
+    public final int[] feature;
+    public final double[] threshold;
+    /** Largest float not above {@link #threshold}: for a float x, {@code x <= thresholdFloat} iff {@code x <= threshold}. */
+    public final float[] thresholdFloat;
+    /** Absolute indices of child nodes, -1 for leaves. */
+    public final int[] left;
+    public final int[] right;
+    /** Offset of the leaf class fractions in {@link #values}, -1 for inner nodes. */
+    public final int[] valueOffset;
+    public final double[] values;
+
+    private final ThreadLocal<double[]> scoresBuffer;
+
+    private ForestModel(String version, String[] featureNames, String[][] categories, String[] labels,
+                        double[] defaults, int[] treeRoots, int[] feature, double[] threshold, int[] left, int[] right,
+                        int[] valueOffset, double[] values) {
+        this.version = version;
+        this.featureNames = featureNames;
+        this.categories = categories;
+        this.labels = labels;
+        this.defaults = defaults;
+        this.encoder = new FeatureEncoder(featureNames, categories, labels, defaults);
+        this.treeRoots = treeRoots;
+        this.feature = feature;
+        this.threshold = threshold;
+        this.left = left;
+        this.right = right;
+        this.valueOffset = valueOffset;
+        this.values = values;
+
+        thresholdFloat = new float[threshold.length];
+        for (int node = 0; node < threshold.length; node++) {
+            float rounded = (float) threshold[node];
+            thresholdFloat[node] = (rounded > threshold[node]) ? Math.nextDown(rounded) : rounded;
+        }
+
+        scoresBuffer = ThreadLocal.withInitial(() -> new double[labels.length]);
+    }
+
+    /**
+     * Returns the exported model file for a version under {@code PythonAI/models/} (it may not exist yet).
+     */
+    public static File modelFile(String version) throws IOException {
+        String name = normalizeVersion(version);
+        return new File(new File(ProjectPaths.modelsDir(), name), "model_RF_" + name + FILE_EXTENSION);
+    }
+
+    public static String normalizeVersion(String version) {
+        return (version == null || version.isBlank()) ? DEFAULT_VERSION : version;
+    }
+
+    /**
+     * Reads a model exported by {@code exportModel.py}.
+     */
+    public static ForestModel load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a forest model file: " + path);
+
+            int formatVersion = in.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported forest model format " + formatVersion + ": " + path);
+            }
+
+            String version = in.readUTF();
+
+            int featureCount = in.readInt();
+            String[] featureNames = new String[featureCount];
+            String[][] categories = new String[featureCount][];
+            double[] defaults = new double[featureCount];
+            for (int f = 0; f < featureCount; f++) {
+                featureNames[f] = in.readUTF();
+                if (in.readByte() != 0) categories[f] = readStrings(in);
+                defaults[f] = (in.readByte() != 0) ? in.readDouble() : Double.NaN;
+            }
+
+            String[] labels = readStrings(in);
+            int classCount = labels.length;
+
+            int treeCount = in.readInt();
+            int[][] treeFeature = new int[treeCount][];
+            double[][] treeThreshold = new double[treeCount][];
+            int[][] treeLeft = new int[treeCount][];
+            int[][] treeRight = new int[treeCount][];
+            double[][] treeValues = new double[treeCount][];
+
+            int totalNodes = 0, totalValues = 0;
+            for (int t = 0; t < treeCount; t++) {
+                int nodeCount = in.readInt();
+                treeFeature[t] = readInts(in, nodeCount);
+                treeThreshold[t] = readDoubles(in, nodeCount);
+                treeLeft[t] = readInts(in, nodeCount);
+                treeRight[t] = readInts(in, nodeCount);
+
+                int leafCount = 0;
+                for (int child : treeLeft[t]) if (child == -1) leafCount++;
+                treeValues[t] = readDoubles(in, leafCount * classCount);
+
+                totalNodes += nodeCount;
+                totalValues += treeValues[t].length;
+            }
+
+            // Склеиваем деревья в общие массивы, индексы детей делаем абсолютными
+            int[] treeRoots = new int[treeCount];
+            int[] feature = new int[totalNodes];
+            double[] threshold = new double[totalNodes];
+            int[] left = new int[totalNodes];
+            int[] right = new int[totalNodes];
+            int[] valueOffset = new int[totalNodes];
+            double[] values = new double[totalValues];
+
+            int nodeBase = 0, valueBase = 0;
+            for (int t = 0; t < treeCount; t++) {
+                treeRoots[t] = nodeBase;
+                int leaf = 0;
+                for (int n = 0; n < treeFeature[t].length; n++) {
+                    int node = nodeBase + n;
+                    feature[node] = treeFeature[t][n];
+                    threshold[node] = treeThreshold[t][n];
+
+                    if (treeLeft[t][n] == -1) {
+                        feature[node] = -1;
+                        left[node] = -1;
+                        right[node] = -1;
+                        valueOffset[node] = valueBase + leaf * classCount;
+                        leaf++;
+                    } else {
+                        left[node] = nodeBase + treeLeft[t][n];
+                        right[node] = nodeBase + treeRight[t][n];
+                        valueOffset[node] = -1;
+                    }
+                }
+
+                System.arraycopy(treeValues[t], 0, values, valueBase, treeValues[t].length);
+                nodeBase += treeFeature[t].length;
+                valueBase += treeValues[t].length;
+            }
+
+            return new ForestModel(version, featureNames, categories, labels, defaults,
+                treeRoots, feature, threshold, left, right, valueOffset, values);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] result = new String[in.readInt()];
+        for (int i = 0; i < result.length; i++) result[i] = in.readUTF();
+        return result;
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) result[i] = in.readInt();
+        return result;
+    }
+
+    private static double[] readDoubles(DataInputStream in, int count) throws IOException {
+        double[] result = new double[count];
+        for (int i = 0; i < count; i++) result[i] = in.readDouble();
+        return result;
+    }
+
+    public int featureCount() {
+        return featureNames.length;
+    }
+
+    public int classCount() {
+        return labels.length;
+    }
+
+    public int treeCount() {
+        return treeRoots.length;
+    }
+
+    public String label(int classIndex) {
+        return labels[classIndex];
+    }
+
+    @Override
+    public String version() {
+        return version;
+    }
+
+    @Override
+    public FeatureEncoder encoder() {
+        return encoder;
+    }
+
+    /**
+     * Encodes a request into a feature row, see {@link FeatureEncoder#encode(JSONObject)}.
+     */
+    public double[] encode(JSONObject request) {
+        return encoder.encode(request);
+    }
+
+    public void encode(JSONObject request, double[] row) {
+        encoder.encode(request, row);
+    }
+
+    /**
+     * Predicts the class index for an encoded row. Uses a per-thread score buffer, so the call
+     * does not allocate after the first use on a thread.
+     */
+    public int predict(double[] row) {
+        return predict(row, scoresBuffer.get());
+    }
+
+    /**
+     * Predicts the class index, leaving the summed class fractions of all trees in {@code scores}.
+     */
+    @Override
+    public int predict(double[] row, double[] scores) {
+        int classCount = labels.length;
+        for (int c = 0; c < classCount; c++) scores[c] = 0;
+
+        for (int t = 0; t < treeRoots.length; t++) {
+            int offset = valueOffset[leafOf(t, row)];
+            for (int c = 0; c < classCount; c++) scores[c] += values[offset + c];
+        }
+
+        return argmax(scores, classCount);
+    }
+
+    /**
+     * Result of {@link #predictEarlyExit}; reusable so the hot path does not allocate.
+     */
+    public static final class Prediction {
+        public int classIndex;
+        public int treesEvaluated;
+    }
+
+    /**
+     * Same result as {@link #predict(double[], double[])}, but stops walking trees once the
+     * remaining ones can no longer change the argmax. Every tree adds class fractions summing
+     * to 1, so the leader is final when it is ahead of every other class by more than the
+     * number of trees left.
+     */
+    @Override
+    public Prediction predictEarlyExit(double[] row, double[] scores, Prediction out) {
+        int classCount = labels.length;
+        int treeCount = treeRoots.length;
+        for (int c = 0; c < classCount; c++) scores[c] = 0;
+
+        // отрыв не может превысить число пройденных деревьев, поэтому раньше половины проверять нечего
+        int firstCheck = treeCount / 2;
+
+        int t = 0;
+        while (t < treeCount) {
+            int offset = valueOffset[leafOf(t, row)];
+            for (int c = 0; c < classCount; c++) scores[c] += values[offset + c];
+            t++;
+
+            if (t >= firstCheck && t < treeCount && isDecided(scores, classCount, treeCount - t)) break;
+        }
+
+        out.classIndex = argmax(scores, classCount);
+        out.treesEvaluated = t;
+        return out;
+    }
+
+    static boolean isDecided(double[] scores, int classCount, int remainingTrees) {
+        int best = argmax(scores, classCount);
+        double bound = remainingTrees + DECIDED_EPSILON;
+
+        for (int c = 0; c < classCount; c++) {
+            if (c != best && scores[best] - scores[c] <= bound) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Walks one tree and returns the index of the leaf reached by the row.
+     */
+    public int leafOf(int tree, double[] row) {
+        int node = treeRoots[tree];
+        while (feature[node] >= 0) {
+            // sklearn сравнивает признаки во float32
+            node = ((float) row[feature[node]] <= threshold[node]) ? left[node] : right[node];
+        }
+        return node;
+    }
+
+    /**
+     * Index of the largest score; ties go to the lowest index, like numpy.argmax.
+     */
+    public static int argmax(double[] scores, int count) {
+        int best = 0;
+        for (int c = 1; c < count; c++) {
+            if (scores[c] > scores[best]) best = c;
+        }
+        return best;
+    }
+
+    public String predictLabel(JSONObject request) {
+        return labels[predict(encode(request))];
+    }
+}
@@ -0,0 +1,30 @@
+package model;
+
+/**
+ * A loaded forest that predicts class indices for encoded rows: {@link ForestModel} on the heap
+ * or {@link MappedForestModel} over a memory-mapped file.
+ */
+public interface ForestPredictor {
+
+    String version();
+
+    FeatureEncoder encoder();
+
+    /**
+     * Predicts the class index, leaving the summed class fractions of all trees in {@code scores}.
+     */
+    int predict(double[] row, double[] scores);
+
+    /**
+     * Same class as {@link #predict}, but stops once the remaining trees cannot change the majority.
+     */
+    ForestModel.Prediction predictEarlyExit(double[] row, double[] scores, ForestModel.Prediction out);
+
+    default int classCount() {
+        return encoder().classCount();
+    }
+
+    default String label(int classIndex) {
+        return encoder().label(classIndex);
+    }
+}
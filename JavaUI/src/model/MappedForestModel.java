@@ -0,0 +1,437 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Forest read straight from a memory-mapped {@code .taqm} file: opening a version only parses the
+ * header and the encoder strings, the nodes stay in the page cache and are shared between
+ * processes, so several versions can be resident at almost no heap cost.
+ * <p>
+ * Thresholds are quantized per feature: every feature keeps the sorted distinct float thresholds
+ * its splits use, and a node stores the index of its threshold (its bin) instead of the value.
+ * A row is quantized once, {@code bin(x)} being the number of thresholds below {@code x}; then
+ * {@code x <= t[k]} holds exactly when {@code bin(x) <= k}, so predictions are those of
+ * {@link ForestModel}.
+ * <p>
+ * Format (little-endian, fixed-width records):
+ * <pre>
+ *   header    64 bytes: magic "TAQM", formatVersion, featureCount, classCount, treeCount,
+ *             nodeCount, valueCount, thresholdCount, and the offsets of the sections below
+ *   meta      utf version, per feature: utf name, byte categorical, [int32 n, utf class * n],
+ *             byte hasDefault, [float64 default], then int32 labelCount, utf label * labelCount
+ *             (utf = uint16 length + UTF-8)
+ *   bins      int32 binStart[featureCount + 1], float32 threshold[thresholdCount]
+ *   roots     int32 root[treeCount]
+ *   nodes     12 bytes each: int16 feature (-1 for a leaf), uint16 bin,
+ *             int32 left (leaf: offset in values), int32 right (leaf: -1)
+ *   values    float64 leaf class fractions, 8-byte aligned
+ * </pre>
+ * Written by {@link #write} from a {@code .tamodel}, see {@link ForestConverter}.
+ */
+public class MappedForestModel implements ForestPredictor {
+
+    public static final int MAGIC = 0x4D514154; // "TAQM", little-endian
+    public static final int FORMAT_VERSION = 2;
+    public static final String FILE_EXTENSION = ".taqm";
+
+    private static final int HEADER_BYTES = 64;
+    private static final int NODE_BYTES = 12;
+    private static final int MAX_BINS = 0x10000;
+
+    public final String version;
+    public final FeatureEncoder encoder;
+
+    private final ByteBuffer buffer;
+    private final int treeCount;
+    private final int binsOffset;
+    private final int thresholdsOffset;
+    private final int rootsOffset;
+    private final int nodesOffset;
+    private final int valuesOffset;
+
+    private final ThreadLocal<int[]> binsBuffer;
+
+    private MappedForestModel(String version, FeatureEncoder encoder, ByteBuffer buffer, int treeCount,
+                              int binsOffset, int rootsOffset, int nodesOffset, int valuesOffset) {
+        this.version = version;
+        this.encoder = encoder;
+        this.buffer = buffer;
+        this.treeCount = treeCount;
+        this.binsOffset = binsOffset;
+        this.thresholdsOffset = binsOffset + 4 * (encoder.featureCount() + 1);
+        this.rootsOffset = rootsOffset;
+        this.nodesOffset = nodesOffset;
+        this.valuesOffset = valuesOffset;
+
+        binsBuffer = ThreadLocal.withInitial(() -> new int[encoder.featureCount()]);
+    }
+
+    /**
+     * Returns the newest quantized model file of a version, next to its {@code .tamodel}
+     * (it may not exist yet).
+     */
+    public static File modelFile(String version) throws IOException {
+        String name = ForestModel.normalizeVersion(version);
+        File newest = new File(ForestModel.modelFile(name).getParentFile(), "model_RF_" + name + FILE_EXTENSION);
+        long newestGeneration = -1;
+        for (File file : generationFiles(name)) {
+            long generation = generationOf(name, file.getName());
+            if (generation > newestGeneration) {
+                newest = file;
+                newestGeneration = generation;
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Returns a new file name for a version, {@code model_RF_<version>.<generation>.taqm}. A
+     * conversion writes a new file instead of replacing the old one: a mapped file cannot be
+     * replaced or deleted on Windows while a running application still has it open.
+     */
+    public static File newModelFile(String version) throws IOException {
+        String name = ForestModel.normalizeVersion(version);
+        long generation = System.currentTimeMillis();
+        for (File file : generationFiles(name)) generation = Math.max(generation, generationOf(name, file.getName()) + 1);
+        return new File(ForestModel.modelFile(name).getParentFile(), "model_RF_" + name + "." + generation + FILE_EXTENSION);
+    }
+
+    /** Every quantized file of a version: the plain name (generation 0) and the numbered ones. */
+    private static File[] generationFiles(String name) throws IOException {
+        File[] files = ForestModel.modelFile(name).getParentFile().listFiles(file -> generationOf(name, file.getName()) >= 0);
+        return (files != null) ? files : new File[0];
+    }
+
+    /** Generation of a file name of the version, or -1 if the name is not one of them. */
+    private static long generationOf(String name, String fileName) {
+        String prefix = "model_RF_" + name;
+        if (!fileName.startsWith(prefix) || !fileName.endsWith(FILE_EXTENSION)) return -1;
+
+        String middle = fileName.substring(prefix.length(), fileName.length() - FILE_EXTENSION.length());
+        if (middle.isEmpty()) return 0;
+        if (middle.length() < 2 || middle.charAt(0) != '.') return -1;
+        try {
+            return Long.parseLong(middle.substring(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Maps a {@code .taqm} file read-only. The mapping stays valid after the channel is closed.
+     */
+    public static MappedForestModel open(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a quantized forest file: " + path);
+        }
+        int formatVersion = buffer.getInt(4);
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported quantized forest format " + formatVersion + ": " + path);
+        }
+
+        int featureCount = buffer.getInt(8);
+        int treeCount = buffer.getInt(16);
+        int metaOffset = buffer.getInt(32);
+
+        ByteBuffer meta = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(metaOffset);
+        String version = readUtf(meta);
+        String[] featureNames = new String[featureCount];
+        String[][] categories = new String[featureCount][];
+        double[] defaults = new double[featureCount];
+        for (int f = 0; f < featureCount; f++) {
+            featureNames[f] = readUtf(meta);
+            if (meta.get() != 0) categories[f] = readStrings(meta);
+            defaults[f] = (meta.get() != 0) ? meta.getDouble() : Double.NaN;
+        }
+        String[] labels = readStrings(meta);
+
+        return new MappedForestModel(version, new FeatureEncoder(featureNames, categories, labels, defaults), buffer,
+            treeCount, buffer.getInt(36), buffer.getInt(40), buffer.getInt(44), buffer.getInt(48));
+    }
+
+    private static String readUtf(ByteBuffer in) {
+        byte[] bytes = new byte[Short.toUnsignedInt(in.getShort())];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String[] readStrings(ByteBuffer in) {
+        String[] result = new String[in.getInt()];
+        for (int i = 0; i < result.length; i++) result[i] = readUtf(in);
+        return result;
+    }
+
+    /**
+     * Writes the quantized form of a heap model to a new file, {@link #newModelFile} of its
+     * version: the file is written next to it and moved into place, so it is never seen
+     * half-written, and no file that may be mapped is replaced. Older generations of the version
+     * are deleted where possible; one still mapped by a running application is left for the
+     * next conversion.
+     */
+    public static void write(ForestModel forest, Path path) throws IOException {
+        int featureCount = forest.featureCount();
+        int nodeCount = forest.feature.length;
+        if (featureCount > Short.MAX_VALUE) throw new IOException("Too many features: " + featureCount);
+
+        // Различные float-пороги каждого признака по возрастанию
+        float[][] thresholds = new float[featureCount][];
+        int[] used = new int[featureCount];
+        for (int node = 0; node < nodeCount; node++) if (forest.feature[node] >= 0) used[forest.feature[node]]++;
+        for (int f = 0; f < featureCount; f++) thresholds[f] = new float[used[f]];
+        Arrays.fill(used, 0);
+        for (int node = 0; node < nodeCount; node++) {
+            int f = forest.feature[node];
+            if (f >= 0) thresholds[f][used[f]++] = forest.thresholdFloat[node];
+        }
+
+        int thresholdCount = 0;
+        for (int f = 0; f < featureCount; f++) {
+            float[] sorted = thresholds[f];
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (distinct == 0 || Float.compare(sorted[i], sorted[distinct - 1]) != 0) sorted[distinct++] = sorted[i];
+            }
+            if (distinct > MAX_BINS) throw new IOException("Too many thresholds for " + forest.featureNames[f]);
+            thresholds[f] = Arrays.copyOf(sorted, distinct);
+            thresholdCount += distinct;
+        }
+
+        ByteBuffer meta = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        meta = putUtf(meta, forest.version);
+        for (int f = 0; f < featureCount; f++) {
+            meta = putUtf(meta, forest.featureNames[f]);
+            meta = ensure(meta, 1);
+            meta.put((byte) (forest.categories[f] != null ? 1 : 0));
+            if (forest.categories[f] != null) meta = putStrings(meta, forest.categories[f]);
+            meta = ensure(meta, 1 + Double.BYTES);
+            meta.put((byte) (Double.isNaN(forest.defaults[f]) ? 0 : 1));
+            if (!Double.isNaN(forest.defaults[f])) meta.putDouble(forest.defaults[f]);
+        }
+        meta = putStrings(meta, forest.labels);
+        meta.flip();
+
+        int metaOffset = HEADER_BYTES;
+        int binsOffset = align(metaOffset + meta.remaining(), 4);
+        int rootsOffset = binsOffset + 4 * (featureCount + 1) + 4 * thresholdCount;
+        int nodesOffset = rootsOffset + 4 * forest.treeCount();
+        int valuesOffset = align(nodesOffset + NODE_BYTES * nodeCount, 8);
+        long size = (long) valuesOffset + 8L * forest.values.length;
+        if (size > Integer.MAX_VALUE) throw new IOException("Model is too large for one mapping: " + size);
+
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(0, MAGIC);
+        out.putInt(4, FORMAT_VERSION);
+        out.putInt(8, featureCount);
+        out.putInt(12, forest.classCount());
+        out.putInt(16, forest.treeCount());
+        out.putInt(20, nodeCount);
+        out.putInt(24, forest.values.length);
+        out.putInt(28, thresholdCount);
+        out.putInt(32, metaOffset);
+        out.putInt(36, binsOffset);
+        out.putInt(40, rootsOffset);
+        out.putInt(44, nodesOffset);
+        out.putInt(48, valuesOffset);
+
+        out.put(metaOffset, meta, 0, meta.remaining());
+
+        int binStart = 0;
+        int thresholdsOffset = binsOffset + 4 * (featureCount + 1);
+        for (int f = 0; f < featureCount; f++) {
+            out.putInt(binsOffset + 4 * f, binStart);
+            for (float threshold : thresholds[f]) {
+                out.putFloat(thresholdsOffset + 4 * binStart++, threshold);
+            }
+        }
+        out.putInt(binsOffset + 4 * featureCount, binStart);
+
+        for (int t = 0; t < forest.treeCount(); t++) out.putInt(rootsOffset + 4 * t, forest.treeRoots[t]);
+
+        for (int node = 0; node < nodeCount; node++) {
+            int base = nodesOffset + NODE_BYTES * node;
+            int f = forest.feature[node];
+            if (f < 0) {
+                out.putShort(base, (short) -1);
+                out.putShort(base + 2, (short) 0);
+                out.putInt(base + 4, forest.valueOffset[node]);
+                out.putInt(base + 8, -1);
+            } else {
+                int bin = Arrays.binarySearch(thresholds[f], forest.thresholdFloat[node]);
+                out.putShort(base, (short) f);
+                out.putShort(base + 2, (short) bin);
+                out.putInt(base + 4, forest.left[node]);
+                out.putInt(base + 8, forest.right[node]);
+            }
+        }
+
+        for (int i = 0; i < forest.values.length; i++) out.putDouble(valuesOffset + 8 * i, forest.values[i]);
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, out.array());
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+
+        removingOlder(forest.version, path);
+    }
+
+    private static void removingOlder(String version, Path current) throws IOException {
+        String name = ForestModel.normalizeVersion(version);
+        for (File file : generationFiles(name)) {
+            if (file.toPath().toAbsolutePath().equals(current.toAbsolutePath())) continue;
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                // файл ещё отображён запущенным приложением
+                System.out.println("Не удалось удалить старую модель " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static ByteBuffer putUtf(ByteBuffer out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new IOException("String is too long: " + text.substring(0, 32));
+        out = ensure(out, 2 + bytes.length);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+        return out;
+    }
+
+    private static ByteBuffer putStrings(ByteBuffer out, String[] strings) throws IOException {
+        out = ensure(out, 4);
+        out.putInt(strings.length);
+        for (String text : strings) out = putUtf(out, text);
+        return out;
+    }
+
+    private static ByteBuffer ensure(ByteBuffer out, int bytes) {
+        if (out.remaining() >= bytes) return out;
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        return grown.put(out.flip());
+    }
+
+    private static int align(int offset, int alignment) {
+        return (offset + alignment - 1) / alignment * alignment;
+    }
+
+    @Override
+    public String version() {
+        return version;
+    }
+
+    @Override
+    public FeatureEncoder encoder() {
+        return encoder;
+    }
+
+    public int featureCount() {
+        return encoder.featureCount();
+    }
+
+    public int treeCount() {
+        return treeCount;
+    }
+
+    public int nodeCount() {
+        return buffer.getInt(20);
+    }
+
+    /** Size of the mapping in bytes (off-heap). */
+    public int mappedBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Replaces every feature value by its bin: the number of the feature's thresholds below it.
+     * NaN gets a bin above all, so it goes right everywhere, like {@code NaN <= t} being false.
+     */
+    public void quantize(double[] row, int[] bins) {
+        int featureCount = encoder.featureCount();
+        for (int f = 0; f < featureCount; f++) {
+            float x = (float) row[f];
+            if (Float.isNaN(x)) {
+                bins[f] = Integer.MAX_VALUE;
+                continue;
+            }
+
+            // первый порог, не меньший x
+            int low = buffer.getInt(binsOffset + 4 * f);
+            int high = buffer.getInt(binsOffset + 4 * (f + 1));
+            int start = low;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (buffer.getFloat(thresholdsOffset + 4 * mid) < x) low = mid + 1;
+                else high = mid;
+            }
+            bins[f] = low - start;
+        }
+    }
+
+    @Override
+    public int predict(double[] row, double[] scores) {
+        int[] bins = binsBuffer.get();
+        quantize(row, bins);
+
+        int classCount = encoder.classCount();
+        for (int c = 0; c < classCount; c++) scores[c] = 0;
+        for (int t = 0; t < treeCount; t++) addLeaf(leafOf(t, bins), scores, classCount);
+
+        return ForestModel.argmax(scores, classCount);
+    }
+
+    @Override
+    public ForestModel.Prediction predictEarlyExit(double[] row, double[] scores, ForestModel.Prediction out) {
+        int[] bins = binsBuffer.get();
+        quantize(row, bins);
+
+        int classCount = encoder.classCount();
+        for (int c = 0; c < classCount; c++) scores[c] = 0;
+
+        int firstCheck = treeCount / 2;
+        int t = 0;
+        while (t < treeCount) {
+            addLeaf(leafOf(t, bins), scores, classCount);
+            t++;
+
+            if (t >= firstCheck && t < treeCount && ForestModel.isDecided(scores, classCount, treeCount - t)) break;
+        }
+
+        out.classIndex = ForestModel.argmax(scores, classCount);
+        out.treesEvaluated = t;
+        return out;
+    }
+
+    /**
+     * Walks one tree over a quantized row and returns the byte offset of the leaf record.
+     */
+    private int leafOf(int tree, int[] bins) {
+        int base = nodesOffset + NODE_BYTES * buffer.getInt(rootsOffset + 4 * tree);
+        int feature;
+        while ((feature = buffer.getShort(base)) >= 0) {
+            int bin = Short.toUnsignedInt(buffer.getShort(base + 2));
+            int next = (bins[feature] <= bin) ? buffer.getInt(base + 4) : buffer.getInt(base + 8);
+            base = nodesOffset + NODE_BYTES * next;
+        }
+        return base;
+    }
+
+    private void addLeaf(int leafBase, double[] scores, int classCount) {
+        int offset = valuesOffset + 8 * buffer.getInt(leafBase + 4);
+        for (int c = 0; c < classCount; c++) scores[c] += buffer.getDouble(offset + 8 * c);
+    }
+}
@@ -0,0 +1,72 @@
+package model;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ForestBatch.Kernel} on the Vector API: each lane walks one row, all lanes step through
+ * the same tree together. Node fields and feature values are gathered per lane, the split is a
+ * masked float compare, and lanes that already reached a leaf are frozen by the mask.
+ * Loaded reflectively by {@link ForestBatch} only when {@code jdk.incubator.vector} is present.
+ */
+final class VectorBatchKernel implements ForestBatch.Kernel {
+
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    VectorBatchKernel() {
+        if (INT_SPECIES.length() != FLOAT_SPECIES.length()) {
+            throw new IllegalStateException("Int and float species differ in lane count");
+        }
+    }
+
+    @Override
+    public void accumulate(ForestModel forest, float[] block, int rows, double[] scores) {
+        int lanes = INT_SPECIES.length();
+        int classCount = forest.classCount();
+        int vectorRows = rows - rows % lanes;
+
+        int[] nodes = new int[lanes];
+        int[] offsets = new int[lanes];
+        IntVector laneIndex = IntVector.zero(INT_SPECIES).addIndex(1);
+
+        for (int root : forest.treeRoots) {
+            for (int r = 0; r < vectorRows; r += lanes) {
+                IntVector rowIndex = laneIndex.add(r);
+                IntVector node = IntVector.broadcast(INT_SPECIES, root);
+
+                while (true) {
+                    node.intoArray(nodes, 0);
+                    IntVector feature = IntVector.fromArray(INT_SPECIES, forest.feature, 0, nodes, 0);
+
+                    VectorMask<Integer> inner = feature.compare(VectorOperators.GE, 0);
+                    if (!inner.anyTrue()) break;
+
+                    // у листьев feature = -1: читаем любой допустимый адрес, результат всё равно маскируется
+                    feature.mul(rows).add(rowIndex).blend(0, inner.not()).intoArray(offsets, 0);
+                    FloatVector x = FloatVector.fromArray(FLOAT_SPECIES, block, 0, offsets, 0);
+                    FloatVector threshold = FloatVector.fromArray(FLOAT_SPECIES, forest.thresholdFloat, 0, nodes, 0);
+
+                    VectorMask<Integer> goLeft = x.compare(VectorOperators.LE, threshold).cast(INT_SPECIES);
+                    IntVector left = IntVector.fromArray(INT_SPECIES, forest.left, 0, nodes, 0, inner);
+                    IntVector right = IntVector.fromArray(INT_SPECIES, forest.right, 0, nodes, 0, inner);
+
+                    node = node.blend(right.blend(left, goLeft), inner);
+                }
+
+                node.intoArray(nodes, 0);
+                for (int lane = 0; lane < lanes; lane++) {
+                    int offset = forest.valueOffset[nodes[lane]];
+                    int base = (r + lane) * classCount;
+                    for (int c = 0; c < classCount; c++) scores[base + c] += forest.values[offset + c];
+                }
+            }
+        }
+
+        // хвост блока, не кратный ширине вектора
+        ForestBatch.accumulateScalar(forest, block, rows, vectorRows, rows, scores);
+    }
+}
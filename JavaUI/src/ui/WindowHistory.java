@@ -1,27 +1,72 @@
 package ui;
 
+import history.HistoryExporter;
+import history.HistoryIndex;
+import history.HistorySearchIndex;
+import history.HistoryStatistics;
+import history.HistoryStore;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import utils.DesignerApp;
+import utils.NavigationController;
+import utils.ProjectPaths;
+import utils.ThemeCompiler;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.File;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * History window class for displaying evaluation history.
  */
-public class WindowHistory extends Application {
-
-    private static final String HISTORY_PATH = "resources/assets/history/history.json";
+public class WindowHistory extends Application implements NavigationController.Refreshable {
+
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_PAGES = 50;
+    private static final int VISIBLE_ROWS = 10;
+    private static final double CELL_HEIGHT = 58;
+    private static final long FLUSH_TIMEOUT_MS = 2_000;
+
+    /** Fields offered as filters next to the search box. */
+    private static final List<String> FACET_FIELDS = List.of("result", "os", "socket", "ram_type");
+    private static final int MAX_FACET_VALUES = 50;
+
+    private static final ExecutorService PAGE_LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "history-pages");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Builds the search index and runs queries, so the pages never wait for them. */
+    private static final ExecutorService SEARCHER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "history-search");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public Stage primaryStage;
     public DesignerApp designer;
@@ -29,6 +74,35 @@ public class WindowHistory extends Application {
     public JSONObject language;
     public JSONObject themeObject;
 
+    private ListView<Integer> historyList;
+    private Label countLabel;
+    private int totalCount;
+
+    private TextField searchField;
+    private final Map<String, ComboBox<String>> facetBoxes = new LinkedHashMap<>();
+    /** Number of the latest query; results of older ones are dropped. */
+    private int filterRequest;
+
+    /** Loaded pages of list rows; the least recently used ones are dropped. */
+    private final Map<Integer, HistoryIndex.Summary[]> pages = Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, HistoryIndex.Summary[]> eldest) {
+                return size() > MAX_PAGES;
+            }
+        });
+    private final Set<Integer> loadingPages = ConcurrentHashMap.newKeySet();
+
+    /** Follows the history while the window is shown, records of other instances included. */
+    private HistoryStore.Listener liveListener;
+    /** Size of the history after the latest appended record; the list catches up in one go. */
+    private final AtomicInteger appendedCount = new AtomicInteger();
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+    /** The history was cleared or trimmed while the window was hidden in the cache. */
+    private boolean stale;
+    /** The size of the history has arrived and the list is built. */
+    private boolean loaded;
+
     public WindowHistory() {}
 
     public static void main(String[] args) {
@@ -44,6 +118,18 @@ public class WindowHistory extends Application {
         themeObject = designer.themeObject;
 
         createContent();
+
+        NavigationController.getInstance().remember(primaryStage, DesignerApp.UsingWindow.HISTORY, this);
+    }
+
+    /**
+     * Shown again from the cache: follows the history again from the records it already has.
+     */
+    @Override
+    public boolean refreshingView() {
+        if (stale) return false;
+        if (loaded && liveListener == null) followingHistory(totalCount);
+        return true;
     }
 
     private JSONObject wh() {
@@ -55,66 +141,73 @@ public class WindowHistory extends Application {
     }
 
     private void applyStyle(javafx.scene.Node node, String key) {
-        String css = t(key);
-        if (css != null && !css.isBlank()) node.setStyle(css);
+        // правила темы — в таблице стилей сцены, у узла только класс
+        if (!t(key).isBlank()) node.getStyleClass().add(ThemeCompiler.styleClass(key));
     }
 
     private void setPrimaryButtonHover(Button btn) {
-        btn.setStyle(t("primaryButtonOnMouseExited"));
-        btn.setOnMouseEntered(_ -> btn.setStyle(t("primaryButtonOnMouseEntered")));
-        btn.setOnMouseExited(_ -> btn.setStyle(t("primaryButtonOnMouseExited")));
+        // наведение — правило :hover темы, без обработчиков мыши
+        btn.getStyleClass().add(ThemeCompiler.styleClass("primaryButton"));
     }
 
+    /**
+     * Waits for the queued records and takes the size of the history in the background, then
+     * builds the window on the FX thread.
+     */
     public void createContent() {
-        try {
-            Path path = Paths.get(HISTORY_PATH);
-
-            if (!Files.exists(path) || Files.size(path) == 0) {
-                showEmptyHistory();
-                return;
-            }
-
-            String content = Files.readString(path, StandardCharsets.UTF_8).trim();
-            if (content.isEmpty()) {
-                showEmptyHistory();
-                return;
-            }
-
-            JSONArray historyArray;
+        PAGE_LOADER.execute(() -> {
             try {
-                historyArray = new JSONArray(content);
-            } catch (Exception parseErr) {
-                // если файл повреждён/не массив — считаем что истории нет (поведение “не падать”)
-                showEmptyHistory();
-                return;
+                // количество и строки списка берутся из индекса, сам лог не читается
+                HistoryStore store = HistoryStore.getInstance();
+                store.flush(FLUSH_TIMEOUT_MS);
+                int count = store.size();
+                Platform.runLater(() -> showingContent(count));
+
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> showErrorMessage());
             }
+        });
+    }
+
+    private void showingContent(int count) {
+        try {
+            totalCount = count;
+            loaded = true;
+            followingHistory(count);
 
-            if (historyArray.length() == 0) {
+            if (count == 0) {
                 showEmptyHistory();
                 return;
             }
 
             Label titleLabel = new Label(wh().getString("label.history"));
-            titleLabel.setStyle(t("labelTitle") + " " + t("accentText") + " -fx-padding: 0 0 20 0;");
+            applyStyle(titleLabel, "labelTitle");
+            applyStyle(titleLabel, "accentText");
+            titleLabel.setStyle("-fx-padding: 0 0 20 0;");
 
-            Label countLabel = new Label(wh().getString("label.countHistory") + historyArray.length());
-            countLabel.setStyle(t("textSecondary") + " -fx-font-size: 14px; -fx-padding: 0 0 10 0;");
+            countLabel = new Label(wh().getString("label.countHistory") + count);
+            applyStyle(countLabel, "textSecondary");
+            countLabel.setStyle("-fx-font-size: 14px; -fx-padding: 0 0 10 0;");
 
-            designer.formCard.getChildren().addAll(titleLabel, countLabel);
+            designer.formCard.getChildren().addAll(titleLabel, countLabel, createSearchBar());
 
-            for (int i = historyArray.length() - 1; i >= 0; i--) {
-                JSONObject entry = historyArray.optJSONObject(i);
-                if (entry == null) continue;
+            historyList = createHistoryList(allPositions(count));
+            designer.formCard.getChildren().add(historyList);
 
-                Button historyButton = createHistoryButton(entry, i);
-                designer.formCard.getChildren().add(historyButton);
-            }
+            Button statisticsButton = new Button(wh().getString("statisticsButton"));
+            setPrimaryButtonHover(statisticsButton);
+            statisticsButton.setOnAction(_ -> new WindowStatistics().start(primaryStage));
 
             Button clearHistoryButton = new Button(wh().getString("clearHistoryButton"));
             setPrimaryButtonHover(clearHistoryButton);
-            clearHistoryButton.setOnAction(_ -> clearHistory());
+            clearHistoryButton.setOnAction(_ -> clearHistory(clearHistoryButton));
+
+            Button exportButton = new Button(wh().getString("exportButton"));
+            setPrimaryButtonHover(exportButton);
+            exportButton.setOnAction(_ -> exportingDataset(exportButton));
 
-            designer.formCard.getChildren().add(clearHistoryButton);
+            designer.formCard.getChildren().add(new HBox(10, statisticsButton, exportButton, clearHistoryButton));
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -122,70 +215,379 @@ public class WindowHistory extends Application {
         }
     }
 
-    private void clearHistory() {
+    /**
+     * Clears the history in the background: it waits for the queued records and for the lock
+     * shared with other instances.
+     */
+    private void clearHistory(Button clearHistoryButton) {
+        clearHistoryButton.setDisable(true);
+
+        PAGE_LOADER.execute(() -> {
+            try {
+                HistoryStore.getInstance().clear();
+                Platform.runLater(() -> new WindowHistory().start(primaryStage));
+
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    clearHistoryButton.setDisable(false);
+                    showErrorMessage();
+                });
+            }
+        });
+    }
+
+    /**
+     * Saves the history as a CSV in the layout of the training dataset, in the background.
+     */
+    private void exportingDataset(Button exportButton) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(wh().getString("exportTitle"));
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV", "*.csv"));
+        chooser.setInitialFileName("history_dataset.csv");
         try {
-            Path path = Paths.get(HISTORY_PATH);
-
-            // Логика "очистить" та же, просто делаем надёжно:
-            // 1) пробуем удалить, 2) если нельзя — перезаписываем пустым массивом.
-            boolean cleared = false;
-
-            if (Files.exists(path)) {
-                try {
-                    Files.delete(path);
-                    cleared = true;
-                } catch (Exception ignored) {
-                    // например, файл занят/нет прав
+            File datasetDir = ProjectPaths.datasetDir();
+            if (datasetDir.isDirectory()) chooser.setInitialDirectory(datasetDir);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        File target = chooser.showSaveDialog(primaryStage);
+        if (target == null) return;
+
+        exportButton.setDisable(true);
+        exportButton.setText(wh().getString("exportRunning"));
+
+        Thread exporter = new Thread(() -> {
+            String text;
+            try {
+                int count = HistoryExporter.exportCsv(HistoryStore.getInstance(), target.toPath());
+                text = wh().getString("exportDone") + count;
+            } catch (Exception e) {
+                e.printStackTrace();
+                text = wh().getString("exportError");
+            }
+
+            String result = text;
+            Platform.runLater(() -> {
+                exportButton.setText(result);
+                exportButton.setDisable(false);
+            });
+        }, "history-export");
+        exporter.setDaemon(true);
+        exporter.start();
+    }
+
+    /**
+     * Keeps the window in step with the history: new records (also those written by another
+     * running instance) extend the list, a cleared or trimmed history reopens the window.
+     */
+    private void followingHistory(int known) {
+        HistoryStore.Listener listener = new HistoryStore.Listener() {
+            @Override
+            public void appended(int position, JSONObject entry) {
+                appendedCount.accumulateAndGet(position + 1, Math::max);
+                // пачка записей обновляет список один раз
+                if (updateScheduled.compareAndSet(false, true)) Platform.runLater(() -> showingAppended());
+            }
+
+            @Override
+            public void reset() {
+                Platform.runLater(() -> reopening());
+            }
+        };
+        liveListener = listener;
+
+        SEARCHER.execute(() -> {
+            try {
+                HistoryStore.getInstance().attach(listener, known);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void stopFollowing() {
+        HistoryStore.Listener listener = liveListener;
+        liveListener = null;
+        if (listener == null) return;
+
+        SEARCHER.execute(() -> {
+            try {
+                HistoryStore.getInstance().detach(listener);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private boolean isShown() {
+        return designer.formCard.getScene() == primaryStage.getScene();
+    }
+
+    private void showingAppended() {
+        updateScheduled.set(false);
+        if (!isShown()) {
+            stopFollowing();
+            return;
+        }
+
+        int count = appendedCount.get();
+        if (count <= totalCount) return;
+
+        // была пустая история — нужен обычный вид со списком
+        if (historyList == null) {
+            reopening();
+            return;
+        }
+
+        totalCount = count;
+        applyingFilter();
+    }
+
+    private void reopening() {
+        stopFollowing();
+        if (isShown()) new WindowHistory().start(primaryStage);
+        else stale = true;
+    }
+
+    /**
+     * Search box and facet filters. The index is built in the background when the window opens;
+     * the facets get their values once it is ready.
+     */
+    private VBox createSearchBar() {
+        searchField = new TextField();
+        applyStyle(searchField, "input");
+        searchField.setPromptText(wh().getString("searchPrompt"));
+        searchField.textProperty().addListener((_, _, _) -> applyingFilter());
+
+        HBox facetsBox = new HBox(10);
+        for (String field : FACET_FIELDS) {
+            ComboBox<String> box = new ComboBox<>();
+            applyStyle(box, "input");
+            box.setPromptText(wh().getString("facet." + field));
+            box.setMaxWidth(Double.MAX_VALUE);
+            box.setOnAction(_ -> applyingFilter());
+            HBox.setHgrow(box, Priority.ALWAYS);
+
+            facetBoxes.put(field, box);
+            facetsBox.getChildren().add(box);
+        }
+
+        SEARCHER.execute(() -> {
+            try {
+                HistorySearchIndex index = HistorySearchIndex.getInstance();
+
+                Map<String, List<String>> values = new LinkedHashMap<>();
+                for (String field : FACET_FIELDS) {
+                    List<String> fieldValues = index.values(field);
+                    values.put(field, fieldValues.subList(0, Math.min(fieldValues.size(), MAX_FACET_VALUES)));
                 }
-            } else {
-                cleared = true;
+
+                Platform.runLater(() -> values.forEach((field, fieldValues) -> {
+                    ComboBox<String> box = facetBoxes.get(field);
+                    box.getItems().setAll(wh().getString("facet.all"));
+                    box.getItems().addAll(fieldValues);
+                }));
+
+                // заодно подтягиваем счётчики статистики, чтобы её окно открывалось сразу
+                HistoryStatistics.getInstance();
+            } catch (Exception e) {
+                e.printStackTrace();
             }
+        });
+
+        VBox searchBar = new VBox(10, searchField, facetsBox);
+        searchBar.setStyle("-fx-padding: 0 0 10 0;");
+        return searchBar;
+    }
+
+    private void applyingFilter() {
+        HistorySearchIndex.Query query = HistorySearchIndex.Query.parse(searchField.getText());
+        facetBoxes.forEach((field, box) -> query.facet(field, facetValue(box)));
+        int request = ++filterRequest;
 
-            if (!cleared) {
-                Files.createDirectories(path.getParent());
-                Files.writeString(path, "[]", StandardCharsets.UTF_8);
+        if (query.isEmpty()) {
+            showingPositions(allPositions(totalCount), false);
+            return;
+        }
+
+        SEARCHER.execute(() -> {
+            try {
+                int[] found = HistorySearchIndex.newestFirst(HistorySearchIndex.getInstance().search(query));
+
+                Platform.runLater(() -> {
+                    // пока искали, запрос уже сменился
+                    if (request == filterRequest) showingPositions(matchedPositions(found), true);
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
             }
+        });
+    }
 
-            new WindowHistory().start(primaryStage);
+    private String facetValue(ComboBox<String> box) {
+        String value = box.getValue();
+        return (value == null || box.getItems().indexOf(value) == 0) ? null : value;
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            showErrorMessage();
+    private void showingPositions(List<Integer> positions, boolean filtered) {
+        historyList.setItems(FXCollections.observableList(positions));
+        historyList.setPrefHeight(Math.max(1, Math.min(positions.size(), VISIBLE_ROWS)) * CELL_HEIGHT + 2);
+
+        countLabel.setText(filtered
+            ? wh().getString("label.found") + positions.size() + " / " + totalCount
+            : wh().getString("label.countHistory") + totalCount);
+    }
+
+    /**
+     * Every position, newest first, without materializing them.
+     */
+    private static List<Integer> allPositions(int count) {
+        return new AbstractList<>() {
+            @Override
+            public Integer get(int row) {
+                return count - 1 - row;
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    private static List<Integer> matchedPositions(int[] positions) {
+        return new AbstractList<>() {
+            @Override
+            public Integer get(int row) {
+                return positions[row];
+            }
+
+            @Override
+            public int size() {
+                return positions.length;
+            }
+        };
+    }
+
+    /**
+     * Virtualized list: items are just positions in the history, only the visible cells exist,
+     * and their rows are read from the index in pages on a background thread.
+     */
+    private ListView<Integer> createHistoryList(List<Integer> positions) {
+        ListView<Integer> list = new ListView<>(FXCollections.observableList(positions));
+        list.setFixedCellSize(CELL_HEIGHT);
+        list.setPrefHeight(Math.min(positions.size(), VISIBLE_ROWS) * CELL_HEIGHT + 2);
+        list.setStyle("-fx-background-color: transparent; -fx-control-inner-background: transparent;");
+        list.setCellFactory(_ -> new HistoryCell());
+
+        return list;
+    }
+
+    private class HistoryCell extends ListCell<Integer> {
+
+        private final Button button = new Button();
+
+        HistoryCell() {
+            button.setMaxWidth(Double.MAX_VALUE);
+            button.setAlignment(Pos.CENTER_LEFT);
+            button.setPrefHeight(50);
+            setPrimaryButtonHover(button);
+
+            setStyle("-fx-background-color: transparent; -fx-padding: 4 0;");
         }
+
+        @Override
+        protected void updateItem(Integer position, boolean empty) {
+            super.updateItem(position, empty);
+
+            if (empty || position == null) {
+                setGraphic(null);
+                return;
+            }
+
+            button.setText(historyText(position));
+            button.setOnAction(_ -> openDetailedView(position));
+            setGraphic(button);
+        }
+    }
+
+    private String historyText(int position) {
+        HistoryIndex.Summary summary = summaryAt(position);
+        // страница ещё грузится — строка обновится, когда она придёт
+        if (summary == null) return "…";
+
+        String timestamp = (summary.timestampText() != null) ? summary.timestampText() : wh().getString("label.unknownTime");
+        String result = !summary.result().isEmpty() ? summary.result() : wh().getString("label.unknownHistory");
+
+        return timestamp + " — " + result;
     }
 
-    private Button createHistoryButton(JSONObject entry, int index) {
-        String timestamp = entry.optString("timestamp", wh().getString("label.unknownTime"));
-        String result = entry.optString("result", wh().getString("label.unknownHistory"));
+    private HistoryIndex.Summary summaryAt(int position) {
+        int page = position / PAGE_SIZE;
+        HistoryIndex.Summary[] rows = pages.get(page);
 
-        String buttonText = timestamp + " — " + result;
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+
+        // следующая страница в сторону прокрутки (к старым записям) грузится заранее
+        if (position % PAGE_SIZE < PAGE_SIZE / 4 && page > 0) requestPage(page - 1);
 
-        Button button = new Button(buttonText);
-        button.setMaxWidth(Double.MAX_VALUE);
-        button.setAlignment(Pos.CENTER_LEFT);
-        button.setPrefHeight(50);
+        // последняя страница загружена до новых записей — перечитываем её
+        if (position - page * PAGE_SIZE >= rows.length) {
+            pages.remove(page);
+            requestPage(page);
+            return null;
+        }
+        return rows[position - page * PAGE_SIZE];
+    }
 
-        setPrimaryButtonHover(button);
-        button.setOnAction(_ -> openDetailedView(entry, index));
+    private void requestPage(int page) {
+        if (pages.containsKey(page) || !loadingPages.add(page)) return;
+
+        PAGE_LOADER.execute(() -> {
+            try {
+                HistoryStore store = HistoryStore.getInstance();
+                int from = page * PAGE_SIZE;
+                int to = Math.min(from + PAGE_SIZE, store.size());
+
+                HistoryIndex.Summary[] rows = new HistoryIndex.Summary[Math.max(0, to - from)];
+                for (int i = from; i < to; i++) rows[i - from] = store.summary(i);
+
+                pages.put(page, rows);
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                loadingPages.remove(page);
+            }
 
-        return button;
+            Platform.runLater(() -> {
+                if (historyList != null) historyList.refresh();
+            });
+        });
     }
 
-    private void openDetailedView(JSONObject entry, int index) {
-        WindowRequest detailWindow = new WindowRequest(entry, index);
+    private void openDetailedView(int index) {
+        WindowRequest detailWindow = new WindowRequest(index);
         detailWindow.start(primaryStage);
     }
 
     private void showEmptyHistory() {
         Label emptyLabel = new Label(wh().getString("label.emptyHistory"));
-        emptyLabel.setStyle(t("labelLarge") + " " + t("textMuted") + " -fx-padding: 40 0;");
+        applyStyle(emptyLabel, "labelLarge");
+        applyStyle(emptyLabel, "textMuted");
+        emptyLabel.setStyle("-fx-padding: 40 0;");
 
         Label descLabel = new Label(wh().getString("label.desc"));
-        descLabel.setStyle(t("textMuted") + " -fx-font-size: 14px;");
+        applyStyle(descLabel, "textMuted");
+        descLabel.setStyle("-fx-font-size: 14px;");
 
         Button backButton = new Button(wh().getString("label.backButton"));
         setPrimaryButtonHover(backButton);
-        backButton.setOnAction(_ -> new WindowMain().start(primaryStage));
+        backButton.setOnAction(_ -> NavigationController.getInstance().show(primaryStage, DesignerApp.UsingWindow.HOME, WindowMain::new));
 
         VBox emptyBox = new VBox(20, emptyLabel, descLabel, backButton);
         emptyBox.setAlignment(Pos.CENTER);
@@ -195,7 +597,9 @@ public class WindowHistory extends Application {
 
     private void showErrorMessage() {
         Label errorLabel = new Label(wh().getString("label.error"));
-        errorLabel.setStyle(t("labelLarge") + " " + t("dangerText") + " -fx-padding: 40 0;");
+        applyStyle(errorLabel, "labelLarge");
+        applyStyle(errorLabel, "dangerText");
+        errorLabel.setStyle("-fx-padding: 40 0;");
 
         designer.formCard.getChildren().add(errorLabel);
     }
@@ -1,22 +1,20 @@
 package ui;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.IOException;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
+import estimation.EstimationService;
+import estimation.ForestEstimator;
+import estimation.ModelRegistry;
+import estimation.PythonWorkerClient;
+import history.HistoryStore;
 import javafx.animation.RotateTransition;
 import javafx.application.Application;
 import javafx.collections.FXCollections;
@@ -39,16 +37,21 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.util.Duration;
+import utils.AppConfig;
 import utils.DesignerApp;
+import utils.ImageCache;
+import utils.NavigationController;
+import utils.StartupOrchestrator;
+import utils.ThemeCompiler;
 
 /**
  * Main window class for PC configuration evaluation application.
  */
 public class WindowMain extends Application {
 
-    private static final String HISTORY_PATH = "resources/assets/history/history.json";
-    private static final String PY_SCRIPT_REL = "../PythonAI/helpers/predict.py";
+    private static final long ESTIMATING_TIMEOUT_S = 60;
     private static final String LOADING_IMG_PATH = "resources/images/systems/loading.png";
+    private static final double LOADING_IMG_SIZE = 175;
 
     public DesignerApp designer;
     public String model;
@@ -120,7 +123,55 @@ public class WindowMain extends Application {
     private final HashMap<Object, Label> fieldLabels = new HashMap<>();
 
     public static void main(String[] args) {
-        launch(args);
+        // заставка сразу, главное окно — когда всё подготовлено
+        Application.launch(StartupOrchestrator.class, args);
+    }
+
+    /**
+     * Applies the history settings and opens the history (migration, monthly split, archiving
+     * of past months), so that the history window does not open it on the FX thread.
+     */
+    public static void prepareHistory(AppConfig config) {
+        HistoryStore store = HistoryStore.getInstance();
+        store.setSyncPolicy(HistoryStore.SyncPolicy.parse(config.historySync()));
+        store.setRetentionMonths(config.historyRetentionMonths());
+
+        try {
+            // первый вызов открывает историю и применяет срок хранения
+            store.size();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sets up the estimation backend and starts loading the selected model; the first call also
+     * reads the estimation cache. Completes when the model is active.
+     */
+    public static CompletableFuture<String> prepareEstimation(AppConfig config) {
+        ForestEstimator.getInstance().setEarlyExit(config.earlyExit());
+
+        EstimationService estimation = EstimationService.getInstance();
+        estimation.setBackend(config.backend());
+        if (config.persistCache()) estimation.enablePersistence(Paths.get(EstimationService.CACHE_PATH));
+
+        // Python-процесс нужен только если модель не экспортирована для JVM;
+        // запускается один раз, до выбора модели, и дальше остаётся прогретым
+        if (estimation.selectEstimator(config.model()) == PythonWorkerClient.getInstance()) {
+            PythonWorkerClient.getInstance().startAsync();
+        }
+
+        // модель загружается в фоне (в том числе в Python-процесс), первая оценка её уже не ждёт
+        return ModelRegistry.getInstance().select(config.model());
+    }
+
+    /**
+     * Starts decoding the pictures of the loading dialog and of the result window in the
+     * background, while the form is being filled in. Call on the FX thread.
+     */
+    public static void preloadImages() {
+        ImageCache.getInstance().preload(LOADING_IMG_PATH, LOADING_IMG_SIZE, LOADING_IMG_SIZE);
+        WindowResult.preloadImages();
     }
 
     @Override
@@ -130,6 +181,8 @@ public class WindowMain extends Application {
 
         model = designer.model;
 
+        // история, оценка и картинки готовятся в StartupOrchestrator и при смене настроек
+
         languageObject = designer.languageObject;
         themeObject = designer.themeObject;
 
@@ -143,6 +196,8 @@ public class WindowMain extends Application {
 
         // как было
         fillTestData("Хорошая");
+
+        NavigationController.getInstance().remember(primaryStage, DesignerApp.UsingWindow.HOME, this);
     }
 
     private JSONObject wm() {
@@ -154,14 +209,13 @@ public class WindowMain extends Application {
     }
 
     private void applyStyle(javafx.scene.Node node, String key) {
-        String css = t(key);
-        if (css != null && !css.isBlank()) node.setStyle(css);
+        // правила темы — в таблице стилей сцены, у узла только класс
+        if (!t(key).isBlank()) node.getStyleClass().add(ThemeCompiler.styleClass(key));
     }
 
     private void setPrimaryButtonHover(Button btn) {
-        btn.setStyle(t("primaryButtonOnMouseExited"));
-        btn.setOnMouseEntered(_ -> btn.setStyle(t("primaryButtonOnMouseEntered")));
-        btn.setOnMouseExited(_ -> btn.setStyle(t("primaryButtonOnMouseExited")));
+        // наведение — правило :hover темы, без обработчиков мыши
+        btn.getStyleClass().add(ThemeCompiler.styleClass("primaryButton"));
     }
 
     private void fillTestData(String type) {
@@ -236,7 +290,8 @@ public class WindowMain extends Application {
     }
 
     private void createContent() {
-        messageLabel.setStyle(t("dangerText") + " -fx-font-size: 20px;");
+        applyStyle(messageLabel, "dangerText");
+        messageLabel.setStyle("-fx-font-size: 20px;");
 
         GridPane gridPane = createFormGrid();
 
@@ -314,7 +369,8 @@ public class WindowMain extends Application {
 
     private int addSection(GridPane grid, String title, int row) {
         Label label = new Label(title);
-        label.setStyle(t("labelMiddle") + " -fx-padding: 10 0 5 0;");
+        applyStyle(label, "labelMiddle");
+        label.setStyle("-fx-padding: 10 0 5 0;");
         label.setMaxWidth(Double.MAX_VALUE);
         grid.add(label, 0, row, 4, 1);
         return row + 1;
@@ -372,27 +428,32 @@ public class WindowMain extends Application {
         applyStyle(dialogVBox, "card");
 
         Label statusLabel = new Label(wm().getString("label.status"));
-        statusLabel.setStyle(t("textSecondary") + " -fx-font-size: 14px;");
-
-        try (InputStream is = Files.newInputStream(Paths.get(LOADING_IMG_PATH))) {
-            Image loadingImage = new Image(is);
-            ImageView imageLoading = new ImageView(loadingImage);
-            imageLoading.setFitWidth(175);
-            imageLoading.setFitHeight(175);
-            imageLoading.setPreserveRatio(true);
-
-            RotateTransition rotate = new RotateTransition(Duration.seconds(4), imageLoading);
-            rotate.setByAngle(-720);
-            rotate.setCycleCount(RotateTransition.INDEFINITE);
-            rotate.play();
-
-            dialogVBox.getChildren().addAll(imageLoading, statusLabel);
-        } catch (Exception e) {
-            e.printStackTrace();
-            dialogVBox.getChildren().add(statusLabel);
-        }
+        applyStyle(statusLabel, "textSecondary");
+        statusLabel.setStyle("-fx-font-size: 14px;");
+
+        // картинка уже декодирована заранее, в размере окна загрузки
+        Image loadingImage = ImageCache.getInstance().get(LOADING_IMG_PATH, LOADING_IMG_SIZE, LOADING_IMG_SIZE);
+        ImageView imageLoading = new ImageView(loadingImage);
+        imageLoading.setFitWidth(LOADING_IMG_SIZE);
+        imageLoading.setFitHeight(LOADING_IMG_SIZE);
+        imageLoading.setPreserveRatio(true);
+
+        RotateTransition rotate = new RotateTransition(Duration.seconds(4), imageLoading);
+        rotate.setByAngle(-720);
+        rotate.setCycleCount(RotateTransition.INDEFINITE);
+        rotate.play();
+
+        dialogVBox.getChildren().addAll(imageLoading, statusLabel);
+        ImageCache.whenLoaded(loadingImage, loaded -> {
+            if (!loaded.isError()) return;
+            System.out.println("Ошибка загрузки: " + LOADING_IMG_PATH);
+            rotate.stop();
+            dialogVBox.getChildren().remove(imageLoading);
+        });
 
         Scene dialogScene = new Scene(dialogVBox, 500, 300);
+        // у диалога своя сцена — та же таблица стилей темы
+        dialogScene.getStylesheets().setAll(primaryStage.getScene().getStylesheets());
         dialogStage.setScene(dialogScene);
         dialogStage.show();
 
@@ -436,33 +497,9 @@ public class WindowMain extends Application {
 
     private String getEstimating(String jsonData) {
         try {
-            String classPath = getClass().getProtectionDomain().getCodeSource().getLocation().getPath();
-            File classDir = new File(classPath).getParentFile();
-
-            File pythonScript = new File(classDir, PY_SCRIPT_REL);
-            String scriptPath = pythonScript.getCanonicalPath();
-
-            ProcessBuilder pb = new ProcessBuilder("py", "-3", scriptPath);
-            pb.redirectErrorStream(true);
-
-            Process process = pb.start();
-
-            try (var os = process.getOutputStream()) {
-                os.write(jsonData.getBytes(StandardCharsets.UTF_8));
-            }
-
-            StringBuilder output = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)
-            )) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
-            }
-
-            process.waitFor();
-            return output.toString();
+            return EstimationService.getInstance()
+                .estimate(new JSONObject(jsonData))
+                .get(ESTIMATING_TIMEOUT_S, TimeUnit.SECONDS);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -482,9 +519,18 @@ public class WindowMain extends Application {
     private void clearingLabel() {
         messageLabel.setText("");
 
-        String base = t("labelSmall");
-        for (Map.Entry<Object, Label> entry : fieldLabels.entrySet()) {
-            entry.getValue().setStyle(base);
+        for (Label label : fieldLabels.values()) {
+            label.getStyleClass().remove(ThemeCompiler.styleClass("dangerText"));
+            label.setStyle("");
+        }
+    }
+
+    private void markingInvalid(Label label) {
+        // подпись поля уже с классом labelSmall, меняется только цвет
+        if (t("dangerText").isBlank()) {
+            label.setStyle("-fx-text-fill: red;");
+        } else if (!label.getStyleClass().contains(ThemeCompiler.styleClass("dangerText"))) {
+            applyStyle(label, "dangerText");
         }
     }
 
@@ -495,7 +541,7 @@ public class WindowMain extends Application {
         if (object instanceof TextField tf) {
             String text = tf.getText();
             if (text == null || text.trim().isEmpty()) {
-                label.setStyle("-fx-font-size: 13px; -fx-text-fill: red;");
+                markingInvalid(label);
                 return false;
             }
             return validateTyped(text, type, label);
@@ -505,7 +551,7 @@ public class WindowMain extends Application {
             Object val = cb.getValue();
             String text = (val == null) ? null : val.toString();
             if (text == null || text.trim().isEmpty()) {
-                label.setStyle("-fx-font-size: 13px; -fx-text-fill: red;");
+                markingInvalid(label);
                 return false;
             }
             return validateTyped(text, type, label);
@@ -518,7 +564,7 @@ public class WindowMain extends Application {
         // "String" означает: НЕ число
         if ("String".equals(type)) {
             if (tryParseDouble(text) != null) {
-                label.setStyle(t("dangerText") + " -fx-font-size: 13px;");
+                markingInvalid(label);
                 return false;
             }
             return true;
@@ -527,14 +573,14 @@ public class WindowMain extends Application {
         // "Double" означает: число
         if ("Double".equals(type)) {
             if (tryParseDouble(text) == null) {
-                label.setStyle(t("dangerText") + " -fx-font-size: 13px;");
+                markingInvalid(label);
                 return false;
             }
             return true;
         }
 
         // неизвестный тип — считаем невалидным
-        label.setStyle(t("dangerText") + " -fx-font-size: 13px;");
+        markingInvalid(label);
         return false;
     }
 
@@ -583,7 +629,7 @@ public class WindowMain extends Application {
         obj.put("mother_board", safeLower(motherBoardField.getText()));
         obj.put("power_supply", tryParseDouble(powerSupplyField.getText()));
 
-        obj.put("model", model);
+        obj.put("model", ModelRegistry.getInstance().activeVersion());
 
         return obj.toString();
     }
@@ -606,31 +652,10 @@ public class WindowMain extends Application {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         newEntry.put("timestamp", now.format(formatter));
 
-        try {
-            Path path = Paths.get(HISTORY_PATH);
-            Files.createDirectories(path.getParent());
-
-            JSONArray historyArray;
-
-            if (Files.exists(path) && Files.size(path) > 0) {
-                String content = Files.readString(path, StandardCharsets.UTF_8).trim();
-                try {
-                    historyArray = content.isEmpty() ? new JSONArray() : new JSONArray(content);
-                } catch (Exception parseErr) {
-                    historyArray = new JSONArray(); // файл повреждён — начинаем заново
-                }
-            } else {
-                historyArray = new JSONArray();
-            }
-
-            historyArray.put(newEntry);
-
-            try (FileWriter writer = new FileWriter(path.toFile(), StandardCharsets.UTF_8)) {
-                writer.write(historyArray.toString(2));
-            }
-
-        } catch (Exception e) {
+        // запись уходит фоновому писателю, оценка не ждёт диска
+        HistoryStore.getInstance().appendAsync(newEntry).exceptionally(e -> {
             e.printStackTrace();
-        }
+            return null;
+        });
     }
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package ui;
 
+import history.HistorySearchIndex;
+import history.HistoryStore;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -8,6 +11,8 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import utils.DesignerApp;
+import utils.NavigationController;
+import utils.ThemeCompiler;
 
 import org.json.JSONObject;
 
@@ -30,6 +35,19 @@ public class WindowRequest extends Application {
         this.index = index;
     }
 
+    /**
+     * Opens entry {@code index} of the history (0 is the oldest), read by its offset in the log.
+     */
+    public WindowRequest(int index) {
+        this.index = index;
+        try {
+            this.entry = HistoryStore.getInstance().get(index);
+        } catch (Exception e) {
+            e.printStackTrace();
+            this.entry = new JSONObject();
+        }
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -54,29 +72,33 @@ public class WindowRequest extends Application {
     }
 
     private void applyStyle(javafx.scene.Node node, String key) {
-        String css = t(key);
-        if (css != null && !css.isBlank()) node.setStyle(css);
+        // правила темы — в таблице стилей сцены, у узла только класс
+        if (!t(key).isBlank()) node.getStyleClass().add(ThemeCompiler.styleClass(key));
     }
 
     private void setPrimaryButtonHover(Button btn) {
-        btn.setStyle(t("primaryButtonOnMouseExited"));
-        btn.setOnMouseEntered(_ -> btn.setStyle(t("primaryButtonOnMouseEntered")));
-        btn.setOnMouseExited(_ -> btn.setStyle(t("primaryButtonOnMouseExited")));
+        // наведение — правило :hover темы, без обработчиков мыши
+        btn.getStyleClass().add(ThemeCompiler.styleClass("primaryButton"));
     }
 
     private void createContent() {
         Label titleLabel = new Label(wr().getString("label.title") + (index + 1));
-        titleLabel.setStyle(t("labelTitle") + " " + t("accentText") + " -fx-padding: 0 0 10 0;");
+        applyStyle(titleLabel, "labelTitle");
+        applyStyle(titleLabel, "accentText");
+        titleLabel.setStyle("-fx-padding: 0 0 10 0;");
 
         String result = entry.optString("result", wr().getString("label.unknownHistory"));
 
         Label resultLabel = new Label(wr().getString("label.result") + result);
-        resultLabel.setStyle(t("labelLarge") + " " + getColorStyleByResult(result) + " -fx-padding: 0 0 20 0;");
+        applyStyle(resultLabel, "labelLarge");
+        applyStyle(resultLabel, getColorKeyByResult(result));
+        resultLabel.setStyle("-fx-padding: 0 0 20 0;");
 
         String timestamp = entry.optString("timestamp", wr().getString("label.unknownTime"));
 
         Label timeLabel = new Label(wr().getString("label.time") + timestamp);
-        timeLabel.setStyle(t("textSecondary") + " -fx-font-size: 14px; -fx-padding: 0 0 30 0;");
+        applyStyle(timeLabel, "textSecondary");
+        timeLabel.setStyle("-fx-font-size: 14px; -fx-padding: 0 0 30 0;");
 
         GridPane gridPane = new GridPane();
         gridPane.setHgap(20);
@@ -105,10 +127,15 @@ public class WindowRequest extends Application {
             addGridRow(gridPane, rows[i][0], rows[i][1], i);
         }
 
+        Label sameConfigurationLabel = new Label();
+        applyStyle(sameConfigurationLabel, "textSecondary");
+        sameConfigurationLabel.setStyle("-fx-font-size: 14px; -fx-padding: 15 0 0 0;");
+        countingSameConfiguration(sameConfigurationLabel);
+
         Button backButton = new Button(wr().getString("label.backButton"));
         backButton.setMaxWidth(Double.MAX_VALUE);
         setPrimaryButtonHover(backButton);
-        backButton.setOnAction(_ -> new WindowHistory().start(primaryStage));
+        backButton.setOnAction(_ -> NavigationController.getInstance().show(primaryStage, DesignerApp.UsingWindow.HISTORY, WindowHistory::new));
 
         VBox.setMargin(backButton, new Insets(20, 0, 0, 0));
 
@@ -117,30 +144,53 @@ public class WindowRequest extends Application {
             resultLabel,
             timeLabel,
             gridPane,
+            sameConfigurationLabel,
             backButton
         );
     }
 
+    /**
+     * Fills the label with the number of evaluations of the same machine, found by the
+     * configuration id in the search index once it is ready.
+     */
+    private void countingSameConfiguration(Label label) {
+        String config = entry.optString(HistoryStore.CONFIG_FIELD, "");
+        if (config.isEmpty()) return;
+
+        Thread counter = new Thread(() -> {
+            try {
+                HistorySearchIndex.Query query = new HistorySearchIndex.Query().facet(HistoryStore.CONFIG_FIELD, config);
+                int count = HistorySearchIndex.getInstance().search(query).cardinality();
+                Platform.runLater(() -> label.setText(wr().getString("label.sameConfiguration") + count));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "history-same-configuration");
+        counter.setDaemon(true);
+        counter.start();
+    }
+
     private void addGridRow(GridPane grid, String label, String value, int row) {
         Label lblLabel = new Label(label);
-        lblLabel.setStyle(t("labelSmall") + " -fx-font-weight: bold;");
+        applyStyle(lblLabel, "labelSmall");
+        lblLabel.setStyle("-fx-font-weight: bold;");
 
         Label lblValue = new Label(value);
-        lblValue.setStyle(t("textPrimary") + " -fx-font-size: 13px;");
+        applyStyle(lblValue, "textPrimary");
+        lblValue.setStyle("-fx-font-size: 13px;");
 
         grid.add(lblLabel, 0, row);
         grid.add(lblValue, 1, row);
     }
 
-    private String getColorStyleByResult(String result) {
-        String fallback = t("textPrimary");
+    private String getColorKeyByResult(String result) {
         String pick;
 
-        if (result != null && result.contains("Хорошая")) pick = t("successText");
-        else if (result != null && result.contains("Нормальная")) pick = t("warningText");
-        else if (result != null && result.contains("Плохая")) pick = t("dangerText");
-        else pick = t("accentText");
+        if (result != null && result.contains("Хорошая")) pick = "successText";
+        else if (result != null && result.contains("Нормальная")) pick = "warningText";
+        else if (result != null && result.contains("Плохая")) pick = "dangerText";
+        else pick = "accentText";
 
-        return (pick == null || pick.isBlank()) ? fallback : pick;
+        return t(pick).isBlank() ? "textPrimary" : pick;
     }
 }
\ No newline at end of file
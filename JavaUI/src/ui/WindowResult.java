@@ -1,8 +1,6 @@
 package ui;
 
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.List;
 
 import org.json.JSONObject;
 
@@ -16,6 +14,9 @@ import javafx.scene.image.ImageView;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import utils.DesignerApp;
+import utils.ImageCache;
+import utils.NavigationController;
+import utils.ThemeCompiler;
 
 /**
  * Result window class for displaying PC evaluation results.
@@ -23,6 +24,12 @@ import utils.DesignerApp;
  */
 public class WindowResult extends Application {
 
+    private static final String OLD_PC_IMAGE = "resources/images/pc/old_pc.png";
+    private static final String NORMAL_PC_IMAGE = "resources/images/pc/normal_pc.png";
+    private static final String GOOD_PC_IMAGE = "resources/images/pc/future_pc.png";
+    private static final String UNKNOWN_PC_IMAGE = "resources/images/pc/stranger_pc.png";
+    private static final double IMAGE_SIZE = 400;
+
     public Stage primaryStage;
     public DesignerApp designer;
 
@@ -50,6 +57,15 @@ public class WindowResult extends Application {
         createContent();
     }
 
+    /**
+     * Starts decoding the pictures of every result, so the window opens with its image ready.
+     */
+    public static void preloadImages() {
+        for (String path : List.of(OLD_PC_IMAGE, NORMAL_PC_IMAGE, GOOD_PC_IMAGE, UNKNOWN_PC_IMAGE)) {
+            ImageCache.getInstance().preload(path, IMAGE_SIZE, IMAGE_SIZE);
+        }
+    }
+
     private String normalizeEstimating(String s) {
         if (s == null) return "";
         return s.replace("\n", "").replace("\r", "").trim();
@@ -63,10 +79,14 @@ public class WindowResult extends Application {
         return themeObject != null ? themeObject.optString(key, "") : "";
     }
 
+    private void applyStyle(javafx.scene.Node node, String key) {
+        // правила темы — в таблице стилей сцены, у узла только класс
+        if (!t(key).isBlank()) node.getStyleClass().add(ThemeCompiler.styleClass(key));
+    }
+
     private void setPrimaryButtonHover(Button btn) {
-        btn.setStyle(t("primaryButtonOnMouseExited"));
-        btn.setOnMouseEntered(_ -> btn.setStyle(t("primaryButtonOnMouseEntered")));
-        btn.setOnMouseExited(_ -> btn.setStyle(t("primaryButtonOnMouseExited")));
+        // наведение — правило :hover темы, без обработчиков мыши
+        btn.getStyleClass().add(ThemeCompiler.styleClass("primaryButton"));
     }
 
     private static final class ResultViewData {
@@ -87,7 +107,7 @@ public class WindowResult extends Application {
         // Логика та же: Плохая / Нормальная / Хорошая / иначе Unknown
         if ("Плохая".equals(estimating)) {
             return new ResultViewData(
-                "resources/images/pc/old_pc.png",
+                OLD_PC_IMAGE,
                 wr().getString("badPCResultText"),
                 wr().getString("badPCDetailText"),
                 "dangerText"
@@ -95,7 +115,7 @@ public class WindowResult extends Application {
         }
         if ("Нормальная".equals(estimating)) {
             return new ResultViewData(
-                "resources/images/pc/normal_pc.png",
+                NORMAL_PC_IMAGE,
                 wr().getString("normalPCResultText"),
                 wr().getString("normalPCDetailText"),
                 "warningText"
@@ -103,7 +123,7 @@ public class WindowResult extends Application {
         }
         if ("Хорошая".equals(estimating)) {
             return new ResultViewData(
-                "resources/images/pc/future_pc.png",
+                GOOD_PC_IMAGE,
                 wr().getString("goodPCResultText"),
                 wr().getString("goodPCDetailText"),
                 "successText"
@@ -111,7 +131,7 @@ public class WindowResult extends Application {
         }
 
         return new ResultViewData(
-            "resources/images/pc/stranger_pc.png",
+            UNKNOWN_PC_IMAGE,
             wr().getString("unknownPCResultText"),
             wr().getString("unknownPCDetailText"),
             "accentText"
@@ -119,23 +139,29 @@ public class WindowResult extends Application {
     }
 
     private void addImageWithFade(String filePath) {
-        try (InputStream is = Files.newInputStream(Paths.get(filePath))) {
-            Image pcImage = new Image(is);
-            ImageView imageView = new ImageView(pcImage);
+        Image pcImage = ImageCache.getInstance().get(filePath, IMAGE_SIZE, IMAGE_SIZE);
+        ImageView imageView = new ImageView(pcImage);
+
+        imageView.setFitWidth(IMAGE_SIZE);
+        imageView.setFitHeight(IMAGE_SIZE);
+        imageView.setPreserveRatio(true);
+        imageView.setOpacity(0);
+
+        designer.formCard.getChildren().add(imageView);
 
-            imageView.setFitWidth(400);
-            imageView.setFitHeight(400);
-            imageView.setPreserveRatio(true);
+        // если картинка ещё декодируется, проявление начнётся, когда она будет готова
+        ImageCache.whenLoaded(pcImage, loaded -> {
+            if (loaded.isError()) {
+                System.out.println("Ошибка загрузки: " + filePath);
+                designer.formCard.getChildren().remove(imageView);
+                return;
+            }
 
             FadeTransition fadeIn = new FadeTransition(Duration.seconds(1), imageView);
             fadeIn.setFromValue(0);
             fadeIn.setToValue(1);
             fadeIn.play();
-
-            designer.formCard.getChildren().add(imageView);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        });
     }
 
     public void createContent() {
@@ -145,25 +171,27 @@ public class WindowResult extends Application {
 
         Label statusLabel = new Label(data.resultText);
 
-        String colorCss = t(data.statusColorKey);
-        if (colorCss == null || colorCss.isBlank()) {
-            colorCss = t("textPrimary");
+        String colorKey = data.statusColorKey;
+        if (colorKey == null || t(colorKey).isBlank()) {
+            colorKey = "textPrimary";
         }
 
-        statusLabel.setStyle(t("labelLarge") + " " + colorCss);
+        applyStyle(statusLabel, "labelLarge");
+        applyStyle(statusLabel, colorKey);
         statusLabel.setWrapText(true);
         statusLabel.setAlignment(Pos.CENTER);
         statusLabel.setMaxWidth(700);
 
         Label detailLabel = new Label(data.detailText);
-        detailLabel.setStyle(t("textSecondary") + " -fx-font-size: 14px; -fx-text-alignment: center;");
+        applyStyle(detailLabel, "textSecondary");
+        detailLabel.setStyle("-fx-font-size: 14px; -fx-text-alignment: center;");
         detailLabel.setWrapText(true);
         detailLabel.setMaxWidth(700);
         detailLabel.setAlignment(Pos.CENTER);
 
         Button backButton = new Button(wr().getString("backButton"));
         setPrimaryButtonHover(backButton);
-        backButton.setOnAction(_ -> new WindowMain().start(primaryStage));
+        backButton.setOnAction(_ -> NavigationController.getInstance().show(primaryStage, DesignerApp.UsingWindow.HOME, WindowMain::new));
 
         designer.formCard.getChildren().addAll(statusLabel, detailLabel, backButton);
     }
@@ -2,6 +2,7 @@ package ui;
 
 import org.json.JSONObject;
 
+import estimation.ModelRegistry;
 import javafx.application.Application;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -15,12 +16,14 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import utils.DesignerApp;
+import utils.NavigationController;
+import utils.ThemeCompiler;
 
 /**
  * Settings window class for application configuration.
  * Provides options for window size, theme, language, and AI model version.
  */
-public class WindowSettings extends Application {
+public class WindowSettings extends Application implements NavigationController.Refreshable {
 
     private static final int MIN_WIDTH = 800;
     private static final int MAX_WIDTH = 3840;
@@ -63,6 +66,22 @@ public class WindowSettings extends Application {
 
         loadingConfig();
         createContent();
+
+        NavigationController.getInstance().remember(primaryStage, DesignerApp.UsingWindow.SETTINGS, this);
+    }
+
+    /**
+     * Shown again from the cache: unsaved edits are dropped, the size fields show the current
+     * window size.
+     */
+    @Override
+    public boolean refreshingView() {
+        widthField.setText(String.valueOf((int) primaryStage.getWidth()));
+        heightField.setText(String.valueOf((int) primaryStage.getHeight()));
+        themeComboBox.setValue(translatingTheme(theme));
+        languageComboBox.setValue(language);
+        modelVersionComboBox.setValue(model);
+        return true;
     }
 
     private JSONObject ws() {
@@ -74,14 +93,13 @@ public class WindowSettings extends Application {
     }
 
     private void applyStyle(javafx.scene.Node node, String key) {
-        String css = t(key);
-        if (css != null && !css.isBlank()) node.setStyle(css);
+        // правила темы — в таблице стилей сцены, у узла только класс
+        if (!t(key).isBlank()) node.getStyleClass().add(ThemeCompiler.styleClass(key));
     }
 
     private void setPrimaryButtonHover(Button btn) {
-        btn.setStyle(t("primaryButtonOnMouseExited"));
-        btn.setOnMouseEntered(_ -> btn.setStyle(t("primaryButtonOnMouseEntered")));
-        btn.setOnMouseExited(_ -> btn.setStyle(t("primaryButtonOnMouseExited")));
+        // наведение — правило :hover темы, без обработчиков мыши
+        btn.getStyleClass().add(ThemeCompiler.styleClass("primaryButton"));
     }
 
     private void loadingConfig() {
@@ -146,7 +164,9 @@ public class WindowSettings extends Application {
      */
     public void createContent() {
         Label titleLabel = new Label(ws().getString("label.title"));
-        titleLabel.setStyle(t("labelTitle") + " " + t("accentText") + " -fx-padding: 0 0 30 0;");
+        applyStyle(titleLabel, "labelTitle");
+        applyStyle(titleLabel, "accentText");
+        titleLabel.setStyle("-fx-padding: 0 0 30 0;");
 
         VBox windowSizeBlock = createWindowSizeBlock();
         VBox themeBlock = createThemeBlock();
@@ -186,7 +206,7 @@ public class WindowSettings extends Application {
 
         widthField = new TextField(String.valueOf((int) primaryStage.getWidth()));
         widthField.setPromptText(width.toString());
-        widthField.setStyle(t("input"));
+        applyStyle(widthField, "input");
         widthField.setPrefWidth(100);
 
         Label heightLabel = new Label(ws().getString("label.windowHeight"));
@@ -195,13 +215,14 @@ public class WindowSettings extends Application {
 
         heightField = new TextField(String.valueOf((int) primaryStage.getHeight()));
         heightField.setPromptText(height.toString());
-        heightField.setStyle(t("input"));
+        applyStyle(heightField, "input");
         heightField.setPrefWidth(100);
 
         fieldsBox.getChildren().addAll(widthLabel, widthField, heightLabel, heightField);
 
         Label descLabel = new Label(ws().getString("label.windowDesc"));
-        descLabel.setStyle(t("textMuted") + " -fx-font-size: 12px;");
+        applyStyle(descLabel, "textMuted");
+        descLabel.setStyle("-fx-font-size: 12px;");
 
         block.getChildren().addAll(label, fieldsBox, descLabel);
         VBox.setMargin(block, new Insets(0, 0, 20, 0));
@@ -224,10 +245,11 @@ public class WindowSettings extends Application {
         themeComboBox = new ComboBox<>(themes);
         themeComboBox.setValue(translatingTheme(theme)); // theme: "light"/"dark"
         themeComboBox.setMaxWidth(Double.MAX_VALUE);
-        themeComboBox.setStyle(t("input"));
+        applyStyle(themeComboBox, "input");
 
         Label descLabel = new Label(ws().getString("label.themeDesc"));
-        descLabel.setStyle(t("textMuted") + " -fx-font-size: 12px;");
+        applyStyle(descLabel, "textMuted");
+        descLabel.setStyle("-fx-font-size: 12px;");
 
         block.getChildren().addAll(label, themeComboBox, descLabel);
         VBox.setMargin(block, new Insets(0, 0, 20, 0));
@@ -247,10 +269,11 @@ public class WindowSettings extends Application {
         languageComboBox = new ComboBox<>(languages);
         languageComboBox.setValue(language);
         languageComboBox.setMaxWidth(Double.MAX_VALUE);
-        languageComboBox.setStyle(t("input"));
+        applyStyle(languageComboBox, "input");
 
         Label descLabel = new Label(ws().getString("label.languageDesc"));
-        descLabel.setStyle(t("textMuted") + " -fx-font-size: 12px;");
+        applyStyle(descLabel, "textMuted");
+        descLabel.setStyle("-fx-font-size: 12px;");
 
         block.getChildren().addAll(label, languageComboBox, descLabel);
         VBox.setMargin(block, new Insets(0, 0, 20, 0));
@@ -265,15 +288,17 @@ public class WindowSettings extends Application {
         Label label = new Label(ws().getString("label.model"));
         applyStyle(label, "labelMiddle");
 
-        ObservableList<String> modelVersions = FXCollections.observableArrayList("v1.0.0", "v1.0.1");
+        ObservableList<String> modelVersions = FXCollections.observableArrayList(ModelRegistry.getInstance().versions());
+        if (model != null && !modelVersions.contains(model)) modelVersions.add(model);
 
         modelVersionComboBox = new ComboBox<>(modelVersions);
         modelVersionComboBox.setValue(model);
         modelVersionComboBox.setMaxWidth(Double.MAX_VALUE);
-        modelVersionComboBox.setStyle(t("input"));
+        applyStyle(modelVersionComboBox, "input");
 
         Label descLabel = new Label(ws().getString("label.modelDesc"));
-        descLabel.setStyle(t("textMuted") + " -fx-font-size: 12px;");
+        applyStyle(descLabel, "textMuted");
+        descLabel.setStyle("-fx-font-size: 12px;");
 
         block.getChildren().addAll(label, modelVersionComboBox, descLabel);
         VBox.setMargin(block, new Insets(0, 0, 20, 0));
@@ -299,9 +324,17 @@ public class WindowSettings extends Application {
         obj.put("language", language);
         obj.put("theme", theme);
         obj.put("model", model);
+        obj.put("backend", designer.backend);
+        obj.put("earlyExit", designer.earlyExit);
+        obj.put("persistCache", designer.persistCache);
+        obj.put("historySync", designer.historySync);
+        obj.put("historyRetentionMonths", designer.historyRetentionMonths);
 
         boolean isSaving = designer.savingConfig(obj);
 
+        // новая версия подгружается в фоне и подменяет текущую, когда готова
+        if (isSaving) ModelRegistry.getInstance().select(model);
+
         if (isSaving) showSuccessMessage();
         else showErrorMessage(ws().getString("label.errorSaving"));
     }
@@ -0,0 +1,208 @@
+package ui;
+
+import history.HistoryStatistics;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import utils.DesignerApp;
+import utils.NavigationController;
+import utils.ThemeCompiler;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics window: counts of the history evaluations by result, vendor, month and model version.
+ */
+public class WindowStatistics extends Application {
+
+    private static final int MAX_MONTHS = 12;
+    private static final int MAX_ROWS = 10;
+
+    public Stage primaryStage;
+    public DesignerApp designer;
+
+    public JSONObject language;
+    public JSONObject themeObject;
+
+    private final VBox content = new VBox(10);
+
+    public WindowStatistics() {}
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    @Override
+    public void start(Stage primary) {
+        primaryStage = primary;
+        designer = new DesignerApp(primaryStage, DesignerApp.UsingWindow.STATISTICS);
+
+        language = designer.languageObject;
+        themeObject = designer.themeObject;
+
+        createContent();
+    }
+
+    private JSONObject ws() {
+        return language.getJSONObject("WindowStatistics");
+    }
+
+    private String t(String key) {
+        return themeObject != null ? themeObject.optString(key, "") : "";
+    }
+
+    private void applyStyle(javafx.scene.Node node, String key) {
+        // правила темы — в таблице стилей сцены, у узла только класс
+        if (!t(key).isBlank()) node.getStyleClass().add(ThemeCompiler.styleClass(key));
+    }
+
+    private void setPrimaryButtonHover(Button btn) {
+        // наведение — правило :hover темы, без обработчиков мыши
+        btn.getStyleClass().add(ThemeCompiler.styleClass("primaryButton"));
+    }
+
+    private void createContent() {
+        Label titleLabel = new Label(ws().getString("label.title"));
+        applyStyle(titleLabel, "labelTitle");
+        applyStyle(titleLabel, "accentText");
+        titleLabel.setStyle("-fx-padding: 0 0 20 0;");
+
+        Label loadingLabel = new Label(ws().getString("label.loading"));
+        applyStyle(loadingLabel, "textSecondary");
+        loadingLabel.setStyle("-fx-font-size: 14px;");
+        content.getChildren().add(loadingLabel);
+
+        Button backButton = new Button(ws().getString("label.backButton"));
+        backButton.setMaxWidth(Double.MAX_VALUE);
+        setPrimaryButtonHover(backButton);
+        backButton.setOnAction(_ -> NavigationController.getInstance().show(primaryStage, DesignerApp.UsingWindow.HISTORY, WindowHistory::new));
+        VBox.setMargin(backButton, new Insets(20, 0, 0, 0));
+
+        designer.formCard.getChildren().addAll(titleLabel, content, backButton);
+
+        // счётчики ведутся при каждой записи; здесь они только копируются
+        Thread loader = new Thread(() -> {
+            try {
+                HistoryStatistics.Snapshot snapshot = HistoryStatistics.getInstance().snapshot();
+                Platform.runLater(() -> showingStatistics(snapshot));
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(this::showErrorMessage);
+            }
+        }, "history-statistics");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void showingStatistics(HistoryStatistics.Snapshot snapshot) {
+        content.getChildren().clear();
+
+        if (snapshot.total() == 0) {
+            Label emptyLabel = new Label(ws().getString("label.empty"));
+            applyStyle(emptyLabel, "labelLarge");
+            applyStyle(emptyLabel, "textMuted");
+            emptyLabel.setStyle("-fx-padding: 40 0;");
+            content.getChildren().add(emptyLabel);
+            return;
+        }
+
+        Label totalLabel = new Label(ws().getString("label.total") + snapshot.total());
+        applyStyle(totalLabel, "textSecondary");
+        totalLabel.setStyle("-fx-font-size: 14px; -fx-padding: 0 0 10 0;");
+        content.getChildren().add(totalLabel);
+
+        addSection(ws().getString("label.byResult"), byCount(snapshot.byResult()), snapshot.total());
+        addSection(ws().getString("label.byCpu"), byCount(snapshot.byCpuVendor()), snapshot.total());
+        addSection(ws().getString("label.byGpu"), byCount(snapshot.byGpuVendor()), snapshot.total());
+        addSection(ws().getString("label.byMonth"), lastMonths(snapshot.byMonth()), snapshot.total());
+        addSection(ws().getString("label.byModel"), byCount(snapshot.byModel()), snapshot.total());
+    }
+
+    /**
+     * One card with a row per bucket: name, bar relative to the total, count.
+     */
+    private void addSection(String title, List<Map.Entry<String, Integer>> rows, int total) {
+        Label sectionLabel = new Label(title);
+        applyStyle(sectionLabel, "labelMiddle");
+        sectionLabel.setStyle("-fx-padding: 10 0 5 0;");
+
+        GridPane grid = new GridPane();
+        grid.setHgap(15);
+        grid.setVgap(8);
+        applyStyle(grid, "cardSmall");
+
+        for (int row = 0; row < rows.size(); row++) {
+            Map.Entry<String, Integer> bucket = rows.get(row);
+
+            Label nameLabel = new Label(bucketName(bucket.getKey()));
+            applyStyle(nameLabel, "labelSmall");
+            nameLabel.setStyle("-fx-font-weight: bold;");
+            nameLabel.setMinWidth(140);
+
+            ProgressBar bar = new ProgressBar((double) bucket.getValue() / total);
+            bar.setMaxWidth(Double.MAX_VALUE);
+            GridPane.setHgrow(bar, Priority.ALWAYS);
+
+            Label countLabel = new Label(String.valueOf(bucket.getValue()));
+            applyStyle(countLabel, "labelSmall");
+            countLabel.setMinWidth(60);
+            countLabel.setAlignment(Pos.CENTER_RIGHT);
+
+            grid.add(nameLabel, 0, row);
+            grid.add(bar, 1, row);
+            grid.add(countLabel, 2, row);
+        }
+
+        content.getChildren().addAll(sectionLabel, grid);
+    }
+
+    private String bucketName(String bucket) {
+        return switch (bucket) {
+            case HistoryStatistics.OTHER -> ws().getString("label.other");
+            case HistoryStatistics.UNKNOWN -> ws().getString("label.unknown");
+            default -> bucket;
+        };
+    }
+
+    /**
+     * The largest buckets first, at most {@link #MAX_ROWS}.
+     */
+    private static List<Map.Entry<String, Integer>> byCount(Map<String, Integer> counters) {
+        List<Map.Entry<String, Integer>> rows = new ArrayList<>(counters.entrySet());
+        rows.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        return rows.subList(0, Math.min(rows.size(), MAX_ROWS));
+    }
+
+    /**
+     * The latest {@link #MAX_MONTHS} months in calendar order ("yyyy-MM" sorts as text).
+     */
+    private static List<Map.Entry<String, Integer>> lastMonths(Map<String, Integer> counters) {
+        List<Map.Entry<String, Integer>> rows = new ArrayList<>(counters.entrySet());
+        rows.removeIf(row -> HistoryStatistics.UNKNOWN.equals(row.getKey()));
+        rows.sort(Map.Entry.comparingByKey());
+        return rows.subList(Math.max(0, rows.size() - MAX_MONTHS), rows.size());
+    }
+
+    private void showErrorMessage() {
+        content.getChildren().clear();
+
+        Label errorLabel = new Label(ws().getString("label.error"));
+        applyStyle(errorLabel, "labelLarge");
+        applyStyle(errorLabel, "dangerText");
+        errorLabel.setStyle("-fx-padding: 40 0;");
+
+        content.getChildren().add(errorLabel);
+    }
+}
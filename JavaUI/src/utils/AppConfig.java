@@ -0,0 +1,41 @@
+package utils;
+
+import java.util.Map;
+
+import org.json.JSONObject;
+
+/**
+ * Settings, language files and themes as they were on disk at one moment. A snapshot never
+ * changes: {@link ConfigService} builds a new one when a file changes and swaps it in whole.
+ * Every snapshot has its own deep copies of the JSON objects; within a snapshot they are shared
+ * by every window and must be treated as read-only.
+ *
+ * @param languages parsed {@code language_<name>.json} files by name ("russian", "english")
+ * @param styles    parsed {@code styles.json}: theme name → theme
+ */
+public record AppConfig(double width, double height, String language, String theme, String model,
+                        String backend, boolean earlyExit, boolean persistCache, String historySync,
+                        int historyRetentionMonths, String title, Map<String, JSONObject> languages,
+                        JSONObject styles) {
+
+    public AppConfig {
+        languages = Map.copyOf(languages);
+    }
+
+    /**
+     * Strings of the selected language; empty if its file is missing.
+     */
+    public JSONObject languageObject() {
+        JSONObject selected = languages.get(language);
+        return (selected != null) ? selected : new JSONObject();
+    }
+
+    /**
+     * Styles of the selected theme, the light one if there is no such theme.
+     */
+    public JSONObject themeObject() {
+        JSONObject selected = styles.optJSONObject(theme);
+        if (selected == null) selected = styles.optJSONObject("light");
+        return (selected != null) ? selected : new JSONObject();
+    }
+}
@@ -0,0 +1,252 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.json.JSONObject;
+
+/**
+ * Process-wide settings: {@code config.json}, every language file and {@code styles.json} are
+ * read and parsed once into an {@link AppConfig}. Windows take the {@link #current()} snapshot,
+ * a plain volatile read, instead of reading the files on every construction.
+ * <p>
+ * A {@link WatchService} thread follows the folder. When one of the files changes the snapshot
+ * is rebuilt in the background, swapped in atomically and passed to the listeners. Only the
+ * changed files are parsed again; a file that cannot be parsed (e.g. caught half-written by an
+ * editor) keeps its previous contents.
+ */
+public final class ConfigService {
+
+    public static final String SYSTEMS_DIR = "resources/assets/systems/";
+
+    private static final String CONFIG_NAME = "config.json";
+    private static final String STYLES_NAME = "styles.json";
+    private static final String LANGUAGE_PREFIX = "language_";
+    private static final String JSON_SUFFIX = ".json";
+    private static final long RELOAD_DEBOUNCE_MS = 100;
+
+    private static final double DEFAULT_WIDTH = 900.0, DEFAULT_HEIGHT = 600.0;
+
+    private static ConfigService instance;
+
+    private final Path dir;
+    private volatile AppConfig current;
+    private final List<Consumer<AppConfig>> listeners = new CopyOnWriteArrayList<>();
+
+    /** Text and parsed contents of every file, to parse again only what changed. */
+    private final Map<String, String> sources = new HashMap<>();
+    private final Map<String, JSONObject> parsed = new HashMap<>();
+
+    private Thread watcher;
+
+    private ConfigService(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * The service, with the files read on the first call and watched from then on.
+     */
+    public static synchronized ConfigService getInstance() {
+        if (instance == null) {
+            ConfigService service = new ConfigService(Paths.get(SYSTEMS_DIR));
+            service.reload();
+            service.watch();
+            instance = service;
+        }
+        return instance;
+    }
+
+    /**
+     * The latest snapshot; never blocks.
+     */
+    public AppConfig current() {
+        return current;
+    }
+
+    /**
+     * Called with every new snapshot, on the thread that built it.
+     */
+    public void addListener(Consumer<AppConfig> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<AppConfig> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Writes {@code config.json} (through a temporary file and an atomic move) and publishes the
+     * new snapshot at once, without waiting for the watcher.
+     */
+    public boolean save(JSONObject object) {
+        try {
+            Files.createDirectories(dir);
+            Path target = dir.resolve(CONFIG_NAME);
+            Path temp = dir.resolve(CONFIG_NAME + ".tmp");
+            Files.writeString(temp, object.toString(2), StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            reload();
+            return true;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Reads the files again and publishes a new snapshot if any of them changed.
+     */
+    public synchronized void reload() {
+        boolean changed = (current == null);
+
+        Map<String, String> found = readingSources();
+        for (Map.Entry<String, String> source : found.entrySet()) {
+            if (source.getValue().equals(sources.get(source.getKey()))) continue;
+
+            sources.put(source.getKey(), source.getValue());
+            try {
+                String text = source.getValue().trim();
+                parsed.put(source.getKey(), text.isEmpty() ? new JSONObject() : new JSONObject(text));
+                changed = true;
+            } catch (Exception e) {
+                // файл могли застать недописанным — остаётся прежнее содержимое
+                System.out.println("Настройки: не удалось разобрать " + source.getKey() + ": " + e.getMessage());
+                parsed.putIfAbsent(source.getKey(), new JSONObject());
+            }
+        }
+
+        // удалённый файл — как пустой
+        if (sources.keySet().retainAll(found.keySet())) changed = true;
+        parsed.keySet().retainAll(found.keySet());
+
+        if (!changed) return;
+
+        AppConfig snapshot = building();
+        current = snapshot;
+        for (Consumer<AppConfig> listener : listeners) {
+            try {
+                listener.accept(snapshot);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private Map<String, String> readingSources() {
+        Map<String, String> found = new HashMap<>();
+        if (!Files.isDirectory(dir)) return found;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + JSON_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!isWatched(name)) continue;
+                try {
+                    found.put(name, Files.readString(file, StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return found;
+    }
+
+    private static boolean isWatched(String name) {
+        return name.equals(CONFIG_NAME) || name.equals(STYLES_NAME)
+            || (name.startsWith(LANGUAGE_PREFIX) && name.endsWith(JSON_SUFFIX));
+    }
+
+    private AppConfig building() {
+        JSONObject config = parsed.getOrDefault(CONFIG_NAME, new JSONObject());
+
+        Map<String, JSONObject> languages = new HashMap<>();
+        for (Map.Entry<String, JSONObject> file : parsed.entrySet()) {
+            String name = file.getKey();
+            if (!name.startsWith(LANGUAGE_PREFIX)) continue;
+            languages.put(name.substring(LANGUAGE_PREFIX.length(), name.length() - JSON_SUFFIX.length()), copying(file.getValue()));
+        }
+
+        String language = config.optString("language", "ru");
+        JSONObject languageObject = languages.getOrDefault(language, new JSONObject());
+
+        // title из config, иначе из языкового файла
+        String title = config.optString("title", "");
+        if (title.isBlank()) title = languageObject.optString("appTitle", title);
+
+        return new AppConfig(
+            config.optDouble("width", DEFAULT_WIDTH),
+            config.optDouble("height", DEFAULT_HEIGHT),
+            language,
+            config.optString("theme", "light"),
+            config.optString("model", ""),
+            config.optString("backend", "jvm"),
+            config.optBoolean("earlyExit", false),
+            config.optBoolean("persistCache", false),
+            config.optString("historySync", "periodic"),
+            config.optInt("historyRetentionMonths", 0),
+            title,
+            languages,
+            copying(parsed.getOrDefault(STYLES_NAME, new JSONObject())));
+    }
+
+    /**
+     * Deep copy for a new snapshot: the parsed files are kept to compare with the next reload,
+     * so a snapshot never shares a JSON object with them or with another snapshot.
+     */
+    private static JSONObject copying(JSONObject source) {
+        return new JSONObject(source.toString());
+    }
+
+    private synchronized void watch() {
+        if (watcher != null) return;
+
+        watcher = new Thread(this::watchLoop, "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop() {
+        try (WatchService service = dir.getFileSystem().newWatchService()) {
+            Files.createDirectories(dir);
+            dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+
+            while (true) {
+                WatchKey key = service.take();
+                // редактор сохраняет файл в несколько приёмов — ждём, пока он закончит
+                Thread.sleep(RELOAD_DEBOUNCE_MS);
+
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || isWatched(String.valueOf(event.context()))) {
+                        changed = true;
+                    }
+                }
+                if (!key.reset()) return;
+
+                if (changed) reload();
+            }
+        } catch (InterruptedException e) {
+            // приложение завершается
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,13 +1,6 @@
 package utils;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.List;
 
 import org.json.JSONObject;
 
@@ -35,10 +28,8 @@ import ui.WindowSettings;
  */
 public class DesignerApp extends Application {
 
-    private static final String SYSTEMS_DIR = "resources/assets/systems/";
     private static final String IMAGES_SYSTEMS_DIR = "resources/images/systems/";
-    private static final String CONFIG_PATH = SYSTEMS_DIR + "config.json";
-    private static final String STYLES_PATH = SYSTEMS_DIR + "styles.json";
+    private static final double ICON_SIZE = 25;
 
     /** Root container for the entire application layout. */
     public VBox root;
@@ -73,6 +64,7 @@ public class DesignerApp extends Application {
         SETTINGS,
         HISTORY,
         HISTORY_REQUEST,
+        STATISTICS,
     }
 
     public UsingWindow usingWindow;
@@ -80,9 +72,27 @@ public class DesignerApp extends Application {
     public Double width = 900.0, height = 600.0;
     public String language = "ru", theme = "light", model = "";
 
+    /** Estimation backend: "jvm" (exported forest inside the JVM) or "python" (predictWorker.py). */
+    public String backend = "jvm";
+
+    /** In-JVM inference stops walking trees once the majority vote is decided. */
+    public boolean earlyExit = false;
+
+    /** Estimation results are kept on disk between launches. */
+    public boolean persistCache = false;
+
+    /** When history appends are forced to disk: "none", "periodic" or "every_append". */
+    public String historySync = "periodic";
+
+    /** Months of history to keep, the current one included; 0 keeps everything. */
+    public int historyRetentionMonths = 0;
+
     public JSONObject languageObject = new JSONObject();
     public JSONObject themeObject = new JSONObject();
 
+    /** Window size from the config that the shared scene was last sized to. */
+    private static double appliedWidth, appliedHeight;
+
     public DesignerApp(Stage primary, UsingWindow usingWindow) {
         this.primaryStage = primary;
         this.usingWindow = usingWindow;
@@ -96,114 +106,50 @@ public class DesignerApp extends Application {
     }
 
     private void applyStyle(javafx.scene.Node node, String key) {
-        String css = t(key);
-        if (css != null && !css.isBlank()) node.setStyle(css);
-    }
-
-    private static String readFileUtf8(Path path) throws IOException {
-        return Files.readString(path, StandardCharsets.UTF_8);
+        // правила темы — в таблице стилей сцены, у узла только класс
+        if (!t(key).isBlank()) node.getStyleClass().add(ThemeCompiler.styleClass(key));
     }
 
+    /**
+     * Takes the settings, language and theme from the shared snapshot; nothing is read from
+     * disk here.
+     */
     private void loadingConfig() {
-        try {
-            Path path = Paths.get(CONFIG_PATH);
-            if (!Files.exists(path) || Files.size(path) == 0) {
-                // оставляем дефолты
-                loadingLanguage(language);
-                loadingTheme(theme);
-                return;
-            }
-
-            String content = readFileUtf8(path);
-            JSONObject object = new JSONObject(content);
-
-            width = object.optDouble("width", width);
-            height = object.optDouble("height", height);
-
-            language = object.optString("language", language);
-            loadingLanguage(language);
-
-            theme = object.optString("theme", theme);
-            loadingTheme(theme);
-
-            model = object.optString("model", model);
-
-            // Если есть title в config — берём, иначе можно взять из languageObject (если у тебя там есть ключ).
-            title = object.optString("title", title);
-            if (title.isBlank() && languageObject != null) {
-                title = languageObject.optString("appTitle", title);
-            }
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            // даже если конфиг сломан — попытаться подгрузить язык/тему по дефолтам
-            loadingLanguage(language);
-            loadingTheme(theme);
-        }
-    }
-
-    private void loadingLanguage(String language) {
-        try {
-            Path path = Paths.get(SYSTEMS_DIR + "language_" + language + ".json");
-            if (!Files.exists(path) || Files.size(path) == 0) {
-                languageObject = new JSONObject();
-                return;
-            }
-
-            String content = readFileUtf8(path);
-            languageObject = new JSONObject(content);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            languageObject = new JSONObject();
-        }
-    }
-
-    private void loadingTheme(String theme) {
-        try {
-            Path path = Paths.get(STYLES_PATH);
-
-            if (!Files.exists(path) || Files.size(path) == 0) {
-                themeObject = new JSONObject();
-                return;
-            }
-
-            String content = readFileUtf8(path);
-            JSONObject root = new JSONObject(content);
-
-            if (!root.has(theme) || root.isNull(theme)) {
-                theme = "light";
-            }
-
-            themeObject = root.getJSONObject(theme);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            themeObject = new JSONObject();
-        }
+        AppConfig config = ConfigService.getInstance().current();
+
+        width = config.width();
+        height = config.height();
+        language = config.language();
+        theme = config.theme();
+        model = config.model();
+        backend = config.backend();
+        earlyExit = config.earlyExit();
+        persistCache = config.persistCache();
+        historySync = config.historySync();
+        historyRetentionMonths = config.historyRetentionMonths();
+        title = config.title();
+
+        languageObject = config.languageObject();
+        themeObject = config.themeObject();
     }
 
     public Boolean savingConfig(JSONObject object) {
-        try {
-            File file = new File(CONFIG_PATH);
-            File parent = file.getParentFile();
-            if (parent != null) parent.mkdirs();
-
-            try (FileWriter writer = new FileWriter(file, StandardCharsets.UTF_8)) {
-                writer.write(object.toString(2));
-            }
-            return true;
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
+        return ConfigService.getInstance().save(object);
     }
 
     public static void main(String[] args) {
         launch(args);
     }
 
+    /**
+     * Starts decoding the icons of the title bar in the background. Call on the FX thread.
+     */
+    public static void preloadIcons() {
+        for (String icon : List.of("icon_home.png", "icon_settings.png", "icon_history.png")) {
+            ImageCache.getInstance().preload(IMAGES_SYSTEMS_DIR + icon, ICON_SIZE, ICON_SIZE);
+        }
+    }
+
     @Override
     public void start(Stage primary) {
         root = new VBox();
@@ -217,13 +163,36 @@ public class DesignerApp extends Application {
 
         root.getChildren().addAll(titleHBox, scrollPane);
 
-        Scene scene = new Scene(root, width, height);
+        // одна сцена на всё приложение: окна меняют только её корень
+        Scene scene = primaryStage.getScene();
+        if (scene == null) {
+            primaryStage.setScene(new Scene(root, width, height));
+        } else {
+            scene.setRoot(root);
+            if (width != appliedWidth || height != appliedHeight) {
+                // размер из настроек поменялся
+                root.setPrefSize(width, height);
+                primaryStage.sizeToScene();
+            }
+        }
+        appliedWidth = width;
+        appliedHeight = height;
+        installingStylesheet(primaryStage.getScene());
 
         primaryStage.setTitle("Techno Assistant");
-        primaryStage.setScene(scene);
         primaryStage.show();
     }
 
+    /**
+     * Puts the stylesheet of the current theme on the shared scene. The list is replaced only
+     * when the theme changed, so building a window with the same theme costs no CSS work.
+     */
+    private void installingStylesheet(Scene scene) {
+        String stylesheet = ThemeCompiler.stylesheetFor(theme, themeObject);
+        if (scene.getStylesheets().size() == 1 && scene.getStylesheets().get(0).equals(stylesheet)) return;
+        scene.getStylesheets().setAll(stylesheet);
+    }
+
     public HBox createTitleBar() {
         HBox titleHBox = new HBox(15);
         titleHBox.setAlignment(Pos.CENTER);
@@ -246,27 +215,27 @@ public class DesignerApp extends Application {
     }
 
     private void setNavButtonStyle(Button button) {
-        button.setStyle(t("navButtonOnMouseExited"));
-        button.setOnMouseEntered(e -> button.setStyle(t("navButtonOnMouseEntered")));
-        button.setOnMouseExited(e -> button.setStyle(t("navButtonOnMouseExited")));
+        // наведение — правило :hover темы, без обработчиков мыши
+        button.getStyleClass().add(ThemeCompiler.styleClass("navButton"));
     }
 
     private void setNavActionIfNeeded(Button button, Transition type) {
         // логика та же: если уже на нужном окне — action не ставим
+        NavigationController navigation = NavigationController.getInstance();
         switch (type) {
             case HISTORY -> {
                 if (usingWindow != UsingWindow.HISTORY) {
-                    button.setOnAction(_ -> new WindowHistory().start(primaryStage));
+                    button.setOnAction(_ -> navigation.show(primaryStage, UsingWindow.HISTORY, WindowHistory::new));
                 }
             }
             case HOME -> {
                 if (usingWindow != UsingWindow.HOME) {
-                    button.setOnAction(_ -> new WindowMain().start(primaryStage));
+                    button.setOnAction(_ -> navigation.show(primaryStage, UsingWindow.HOME, WindowMain::new));
                 }
             }
             case SETTINGS -> {
                 if (usingWindow != UsingWindow.SETTINGS) {
-                    button.setOnAction(_ -> new WindowSettings().start(primaryStage));
+                    button.setOnAction(_ -> navigation.show(primaryStage, UsingWindow.SETTINGS, WindowSettings::new));
                 }
             }
         }
@@ -278,24 +247,22 @@ public class DesignerApp extends Application {
         button.setMinSize(35, 35);
         button.setMaxSize(35, 35);
 
-        // Надёжнее грузить через stream: работает и из IDE, и при сборке, если пути реальные.
-        try (InputStream is = Files.newInputStream(Paths.get(iconPath))) {
-            Image image = new Image(is);
-            if (image.isError()) throw new IOException("Image error: " + iconPath);
+        // иконки общие для всех окон: декодируются один раз, в фоне и сразу в размере кнопки
+        Image image = ImageCache.getInstance().get(iconPath, ICON_SIZE, ICON_SIZE);
+        ImageView icon = new ImageView(image);
+        icon.setFitWidth(ICON_SIZE);
+        icon.setFitHeight(ICON_SIZE);
+        icon.setPreserveRatio(true);
 
-            ImageView icon = new ImageView(image);
-            icon.setFitWidth(25);
-            icon.setFitHeight(25);
-            icon.setPreserveRatio(true);
+        button.setGraphic(icon);
+        button.setText("");
 
-            button.setGraphic(icon);
-            button.setText("");
-
-        } catch (Exception e) {
+        ImageCache.whenLoaded(image, loaded -> {
+            if (!loaded.isError()) return;
             button.setGraphic(null);
             button.setText("?");
             System.out.println("Ошибка загрузки: " + iconPath);
-        }
+        });
 
         setNavButtonStyle(button);
         setNavActionIfNeeded(button, type);
@@ -0,0 +1,129 @@
+package utils;
+
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javafx.beans.InvalidationListener;
+import javafx.scene.image.Image;
+import javafx.stage.Screen;
+
+/**
+ * Decoded images shared by all windows. An image is decoded once, on a background thread, at
+ * the size it is shown at (times the output scale of the screen) instead of at the size of the
+ * file: the 400×400 pictures of the result window come from PNGs several times larger.
+ * <p>
+ * Images are kept by path and size. When their pixels take more than {@link #MAX_BYTES} the
+ * least recently used ones are dropped; a window still showing a dropped image keeps it.
+ */
+public final class ImageCache {
+
+    /** Decoded pixels kept at most, 4 bytes per pixel. */
+    private static final long MAX_BYTES = 32L * 1024 * 1024;
+
+    private static ImageCache instance;
+
+    private record Key(String path, double width, double height) {}
+
+    /** Images, the least recently used first. */
+    private final Map<Key, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+
+    private double scale;
+
+    private ImageCache() {}
+
+    public static synchronized ImageCache getInstance() {
+        if (instance == null) instance = new ImageCache();
+        return instance;
+    }
+
+    /**
+     * The image of {@code path} fitted into {@code width}×{@code height} with its proportions
+     * kept. A new image is still loading when it is returned; an {@code ImageView} shows it as
+     * soon as it is ready, and a failure shows up in {@link Image#isError()} once loading ends.
+     */
+    public synchronized Image get(String path, double width, double height) {
+        Key key = new Key(path, width, height);
+        Image image = images.get(key);
+        if (image != null && !image.isError()) return image;
+
+        double outputScale = outputScale();
+        image = new Image(Paths.get(path).toUri().toString(), width * outputScale, height * outputScale, true, true, true);
+        images.put(key, image);
+        evicting();
+        return image;
+    }
+
+    /**
+     * Starts decoding an image that will be needed soon; returns at once.
+     */
+    public void preload(String path, double width, double height) {
+        get(path, width, height);
+    }
+
+    /**
+     * Runs {@code action} on the FX thread once the image has loaded or failed, right away if it
+     * already has. The listener is removed afterwards, so a shared image does not keep the
+     * nodes of old windows alive.
+     */
+    public static void whenLoaded(Image image, Consumer<Image> action) {
+        if (image.getProgress() >= 1 || image.isError()) {
+            action.accept(image);
+            return;
+        }
+
+        InvalidationListener[] listener = new InvalidationListener[1];
+        listener[0] = _ -> {
+            if (image.getProgress() < 1 && !image.isError()) return;
+            image.progressProperty().removeListener(listener[0]);
+            image.errorProperty().removeListener(listener[0]);
+            action.accept(image);
+        };
+        image.progressProperty().addListener(listener[0]);
+        image.errorProperty().addListener(listener[0]);
+    }
+
+    /**
+     * Drops every image, e.g. when the files were replaced.
+     */
+    public synchronized void clear() {
+        images.clear();
+    }
+
+    private void evicting() {
+        long total = 0;
+        for (Map.Entry<Key, Image> entry : images.entrySet()) total += bytesOf(entry.getKey(), entry.getValue());
+
+        Iterator<Map.Entry<Key, Image>> eldest = images.entrySet().iterator();
+        // последнее добавленное не выбрасываем, даже если оно одно больше предела
+        while (total > MAX_BYTES && images.size() > 1 && eldest.hasNext()) {
+            Map.Entry<Key, Image> entry = eldest.next();
+            total -= bytesOf(entry.getKey(), entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    private long bytesOf(Key key, Image image) {
+        // пока картинка грузится, её размер неизвестен — считаем по запрошенному
+        double width = (image.getWidth() > 0) ? image.getWidth() : key.width() * outputScale();
+        double height = (image.getHeight() > 0) ? image.getHeight() : key.height() * outputScale();
+        return (long) (width * height) * 4;
+    }
+
+    /**
+     * Pixels per layout unit of the main screen, so images stay sharp on HiDPI displays.
+     */
+    private double outputScale() {
+        if (scale == 0) {
+            try {
+                scale = Math.max(1.0, Screen.getPrimary().getOutputScaleX());
+            } catch (Exception e) {
+                // экран недоступен (FX ещё не запущен) — без увеличения
+                return 1.0;
+            }
+        }
+        return scale;
+    }
+}
@@ -0,0 +1,108 @@
+package utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+/**
+ * Switches the stage between the windows of the application. All windows share one
+ * {@link Scene}; showing a window replaces its root. The main windows (the ones of the title
+ * bar) are built once and kept in a small LRU cache keyed by {@link DesignerApp.UsingWindow},
+ * so returning to one of them reuses its node tree instead of reading the config, the language
+ * file and the styles again and rebuilding every control: the switch takes a single frame.
+ * <p>
+ * A cached window that implements {@link Refreshable} is told when it is shown again and
+ * updates only what changed. A new {@link ConfigService} snapshot (settings saved, or a file
+ * edited on disk) drops the cache, since language and theme are baked into the nodes.
+ */
+public final class NavigationController {
+
+    /** HOME, SETTINGS and HISTORY; detail windows are built for one record and not kept. */
+    private static final int MAX_CACHED_VIEWS = 3;
+
+    private static NavigationController instance;
+
+    /**
+     * Window that can bring a cached view up to date when it is shown again.
+     */
+    public interface Refreshable {
+        /**
+         * @return false if the view is out of date as a whole and has to be built again
+         */
+        boolean refreshingView();
+    }
+
+    private record View(Application window, Parent root) {}
+
+    /** Built views, the least recently shown first. */
+    private final Map<DesignerApp.UsingWindow, View> views = new LinkedHashMap<>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<DesignerApp.UsingWindow, View> eldest) {
+            return size() > MAX_CACHED_VIEWS;
+        }
+    };
+
+    private NavigationController() {
+        // настройки поменялись (в том числе правкой файла снаружи) — готовые окна устарели
+        ConfigService.getInstance().addListener(_ -> Platform.runLater(this::clear));
+    }
+
+    public static synchronized NavigationController getInstance() {
+        if (instance == null) instance = new NavigationController();
+        return instance;
+    }
+
+    /**
+     * Shows a main window: the cached one if it is still valid, otherwise a new one from
+     * {@code factory}. Call on the FX thread.
+     */
+    public void show(Stage stage, DesignerApp.UsingWindow usingWindow, Supplier<? extends Application> factory) {
+        View view = views.get(usingWindow);
+        Scene scene = stage.getScene();
+
+        if (view != null && scene != null) {
+            scene.setRoot(view.root());
+
+            if (!(view.window() instanceof Refreshable refreshable) || refreshingSafely(refreshable)) return;
+            // представление устарело целиком — строим заново
+            views.remove(usingWindow);
+        }
+
+        try {
+            factory.get().start(stage);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Caches a main window that has just been built on {@code stage}, in place of the previous
+     * one of its kind. The main windows call it at the end of {@code start}, however they were
+     * opened.
+     */
+    public void remember(Stage stage, DesignerApp.UsingWindow usingWindow, Application window) {
+        views.put(usingWindow, new View(window, stage.getScene().getRoot()));
+    }
+
+    /**
+     * Drops every cached view; the next navigation builds them with the current settings.
+     */
+    public void clear() {
+        views.clear();
+    }
+
+    private static boolean refreshingSafely(Refreshable refreshable) {
+        try {
+            return refreshable.refreshingView();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
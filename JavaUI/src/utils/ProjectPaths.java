@@ -0,0 +1,45 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Resolves locations of the PythonAI module relative to the compiled JavaUI classes.
+ */
+public final class ProjectPaths {
+
+    private static final String PYTHON_AI_REL = "../PythonAI";
+
+    private ProjectPaths() {}
+
+    /**
+     * Returns the PythonAI directory (sibling of JavaUI).
+     */
+    public static File pythonAiDir() throws IOException {
+        String classPath = ProjectPaths.class.getProtectionDomain().getCodeSource().getLocation().getPath();
+        File classDir = new File(classPath).getParentFile();
+
+        return new File(classDir, PYTHON_AI_REL).getCanonicalFile();
+    }
+
+    /**
+     * Returns the directory with Python helper scripts.
+     */
+    public static File helpersDir() throws IOException {
+        return new File(pythonAiDir(), "helpers");
+    }
+
+    /**
+     * Returns the directory with the training dataset (dataset.csv).
+     */
+    public static File datasetDir() throws IOException {
+        return new File(pythonAiDir(), "dataset");
+    }
+
+    /**
+     * Returns the directory with trained model versions (v1.0.0, v1.0.1, ...).
+     */
+    public static File modelsDir() throws IOException {
+        return new File(pythonAiDir(), "models");
+    }
+}
@@ -0,0 +1,161 @@
+package utils;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import ui.WindowMain;
+
+/**
+ * Starts the application. A splash that needs nothing from disk is shown at once; meanwhile
+ * the settings, language files and themes, the theme stylesheet, the history, the estimation
+ * cache and backend and the model are prepared on background threads, and the images are
+ * decoded by {@link ImageCache}. The main window is built on the FX thread only when all of
+ * it is ready, so building it reads nothing and waits for nothing.
+ * <p>
+ * Every step is logged with its time since the start of the process, ending with the time to
+ * the first frame (the splash) and to interactive (the main window on screen).
+ * <p>
+ * Later settings changes (a save or an edited file) are applied to the history and the
+ * estimation in the same way, on a background thread, before the rebuilt main window needs them.
+ */
+public class StartupOrchestrator extends Application {
+
+    private static final String APP_TITLE = "Techno Assistant";
+    private static final double SPLASH_WIDTH = 900, SPLASH_HEIGHT = 600;
+    private static final int WORKERS = 3;
+
+    /** A model that takes longer keeps loading after the main window is shown. */
+    private static final long MODEL_WAIT_MS = 3000;
+
+    /** Zero of the timeline: the start of the process, or of this class if it is unknown. */
+    private final long startMillis = ProcessHandle.current().info().startInstant()
+        .map(Instant::toEpochMilli)
+        .orElse(System.currentTimeMillis());
+
+    private volatile long firstFrameMillis;
+
+    @Override
+    public void start(Stage stage) {
+        marking("JavaFX запущен");
+        showingSplash(stage);
+        onNextFrame(() -> firstFrameMillis = marking("первый кадр (заставка)"));
+
+        // от настроек картинки не зависят — начинаем сразу
+        DesignerApp.preloadIcons();
+        WindowMain.preloadImages();
+
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS, runnable -> {
+            Thread thread = new Thread(runnable, "startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        CompletableFuture<AppConfig> config = CompletableFuture.supplyAsync(() -> {
+            AppConfig loaded = ConfigService.getInstance().current();
+            marking("настройки, языки и темы");
+            return loaded;
+        }, workers);
+
+        CompletableFuture<Void> theme = config.thenAcceptAsync(loaded -> {
+            ThemeCompiler.stylesheetFor(loaded.theme(), loaded.themeObject());
+            marking("таблица стилей темы");
+        }, workers);
+
+        CompletableFuture<Void> history = config.thenAcceptAsync(loaded -> {
+            WindowMain.prepareHistory(loaded);
+            marking("история");
+        }, workers);
+
+        CompletableFuture<Void> estimation = config.thenComposeAsync(loaded -> {
+            CompletableFuture<String> model = WindowMain.prepareEstimation(loaded);
+            marking("кэш оценок и бэкенд");
+
+            // ждём копию: по таймауту завершится она, а не сама загрузка модели
+            return model.copy()
+                .completeOnTimeout(null, MODEL_WAIT_MS, TimeUnit.MILLISECONDS)
+                .thenAccept(version -> marking(version != null ? "модель " + version : "модель ещё загружается"));
+        }, workers);
+
+        // слушатель зовётся на потоке наблюдателя или того, кто сохранил настройки (часто FX)
+        ExecutorService applying = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "settings");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ConfigService.getInstance().addListener(changed -> applying.execute(() -> {
+            WindowMain.prepareHistory(changed);
+            WindowMain.prepareEstimation(changed);
+        }));
+
+        CompletableFuture.allOf(theme, history, estimation).whenComplete((_, error) -> {
+            // главное окно показываем в любом случае: само оно умеет обходиться без подготовки
+            if (error != null) error.printStackTrace();
+            workers.shutdown();
+            Platform.runLater(() -> showingMain(stage));
+        });
+    }
+
+    private void showingSplash(Stage stage) {
+        Label title = new Label(APP_TITLE);
+        title.setStyle("-fx-text-fill: white; -fx-font-size: 24px; -fx-font-weight: bold;");
+
+        ProgressBar progress = new ProgressBar(ProgressBar.INDETERMINATE_PROGRESS);
+        progress.setPrefWidth(240);
+
+        VBox splash = new VBox(20, title, progress);
+        splash.setAlignment(Pos.CENTER);
+        // тема ещё не прочитана
+        splash.setStyle("-fx-background-color: #667eea;");
+
+        // главное окно потом займёт эту же сцену
+        stage.setScene(new Scene(splash, SPLASH_WIDTH, SPLASH_HEIGHT));
+        stage.setTitle(APP_TITLE);
+        stage.show();
+    }
+
+    private void showingMain(Stage stage) {
+        marking("подготовка завершена");
+        NavigationController.getInstance().show(stage, DesignerApp.UsingWindow.HOME, WindowMain::new);
+        marking("главное окно построено");
+
+        onNextFrame(() -> {
+            long interactive = marking("главное окно на экране");
+            System.out.println("Запуск: первый кадр через " + firstFrameMillis + " мс, готов к работе через "
+                + interactive + " мс");
+        });
+    }
+
+    /**
+     * Logs a step of the startup and returns its time since the start of the process.
+     */
+    private long marking(String step) {
+        long elapsed = System.currentTimeMillis() - startMillis;
+        System.out.println("Запуск: +" + elapsed + " мс — " + step);
+        return elapsed;
+    }
+
+    /**
+     * Runs {@code action} in the next pulse, the one that renders what is on the stage now.
+     */
+    private static void onNextFrame(Runnable action) {
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                action.run();
+            }
+        }.start();
+    }
+}
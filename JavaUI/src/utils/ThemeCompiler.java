@@ -0,0 +1,150 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.json.JSONObject;
+
+/**
+ * Turns a theme of {@code styles.json} into a stylesheet. Every key becomes a style class
+ * ({@code cardSmall} → {@code .ta-card-small}); a pair {@code <name>OnMouseExited} /
+ * {@code <name>OnMouseEntered} becomes one class with a {@code :hover} rule, so hovering a
+ * button is handled by JavaFX itself instead of replacing its inline style.
+ * <p>
+ * The stylesheet of a theme is written once to {@code resources/assets/cache/} and its URL is
+ * kept; JavaFX parses a stylesheet once per URL, so switching themes back and forth only swaps
+ * the stylesheet of the scene. The file name carries a hash of the contents: an edited theme
+ * gets a new URL and is not served from the parsed copy of the old one.
+ */
+public final class ThemeCompiler {
+
+    public static final String CACHE_DIR = "resources/assets/cache/";
+
+    private static final String CLASS_PREFIX = "ta-";
+    private static final String EXITED_SUFFIX = "OnMouseExited";
+    private static final String ENTERED_SUFFIX = "OnMouseEntered";
+
+    private record Compiled(JSONObject theme, String url) {}
+
+    /** Last stylesheet of every theme by name. */
+    private static final Map<String, Compiled> compiled = new HashMap<>();
+
+    private ThemeCompiler() {}
+
+    /**
+     * Style class of a theme key. Both keys of a hover pair, and the pair name itself
+     * ({@code primaryButton}), give the same class.
+     */
+    public static String styleClass(String key) {
+        String name = key;
+        if (name.endsWith(EXITED_SUFFIX)) name = name.substring(0, name.length() - EXITED_SUFFIX.length());
+        else if (name.endsWith(ENTERED_SUFFIX)) name = name.substring(0, name.length() - ENTERED_SUFFIX.length());
+
+        StringBuilder css = new StringBuilder(CLASS_PREFIX);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) css.append('-');
+                css.append(Character.toLowerCase(c));
+            } else {
+                css.append(c);
+            }
+        }
+        return css.toString();
+    }
+
+    /**
+     * Stylesheet text of a theme. Keys are written in alphabetical order so that the same theme
+     * always gives the same text, the text colours ({@code textMuted}, {@code accentText}, …)
+     * last: a label with {@code labelTitle} and {@code accentText} gets the accent colour, as the
+     * second half of an inline style used to override the first.
+     */
+    public static String compile(JSONObject theme) {
+        StringBuilder css = new StringBuilder("/* Создано из styles.json, не редактировать */\n");
+
+        List<String> keys = new ArrayList<>(new TreeSet<>(theme.keySet()));
+        keys.sort(Comparator.comparing(ThemeCompiler::isTextColor));
+        for (String key : keys) {
+            String declarations = theme.optString(key, "").trim();
+            if (declarations.isEmpty()) continue;
+
+            String selector = "." + styleClass(key);
+            if (key.endsWith(ENTERED_SUFFIX)) {
+                // обычное состояние — в файле раньше наведённого
+                String exited = theme.optString(baseOf(key) + EXITED_SUFFIX, "").trim();
+                if (!exited.isEmpty()) appendingRule(css, selector, exited);
+                appendingRule(css, selector + ":hover", declarations);
+            } else if (!key.endsWith(EXITED_SUFFIX) || theme.optString(baseOf(key) + ENTERED_SUFFIX, "").isBlank()) {
+                appendingRule(css, selector, declarations);
+            }
+        }
+        return css.toString();
+    }
+
+    /**
+     * URL of the stylesheet of a theme, written to the cache folder if it is not there yet.
+     * Returns the previous URL at once while the theme is the same object (the same
+     * {@link ConfigService} snapshot).
+     */
+    public static synchronized String stylesheetFor(String name, JSONObject theme) {
+        Compiled last = compiled.get(name);
+        if (last != null && last.theme() == theme) return last.url();
+
+        String css = compile(theme);
+        // имя темы из config.json попадает в имя файла
+        String fileName = "theme-" + name.replaceAll("[^A-Za-z0-9_]", "_") + "-" + Integer.toHexString(css.hashCode()) + ".css";
+        Path file = Paths.get(CACHE_DIR, fileName);
+
+        try {
+            if (!Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                Path temp = file.resolveSibling(fileName + ".tmp");
+                Files.writeString(temp, css, StandardCharsets.UTF_8);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            removingStale(fileName);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        String url = file.toAbsolutePath().toUri().toString();
+        compiled.put(name, new Compiled(theme, url));
+        return url;
+    }
+
+    private static boolean isTextColor(String key) {
+        return key.startsWith("text") || key.endsWith("Text");
+    }
+
+    private static String baseOf(String key) {
+        int suffix = key.endsWith(ENTERED_SUFFIX) ? ENTERED_SUFFIX.length() : EXITED_SUFFIX.length();
+        return key.substring(0, key.length() - suffix);
+    }
+
+    private static void appendingRule(StringBuilder css, String selector, String declarations) {
+        css.append(selector).append(" { ").append(declarations).append(" }\n");
+    }
+
+    /**
+     * Deletes stylesheets of earlier versions of the theme.
+     */
+    private static void removingStale(String current) throws IOException {
+        String prefix = current.substring(0, current.lastIndexOf('-') + 1);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(CACHE_DIR), prefix + "*.css")) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().equals(current)) Files.deleteIfExists(file);
+            }
+        }
+    }
+}
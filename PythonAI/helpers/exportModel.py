@@ -0,0 +1,127 @@
+import os
+import sys
+import struct
+
+import numpy as np
+import pandas as pd
+
+from trainingAI import FORM_ABSENT_FEATURES, TechnoAssistant
+
+# Экспорт RandomForestClassifier + LabelEncoder в компактный бинарный формат для JavaUI (model.ForestModel).
+#
+# Формат .tamodel (big-endian, строки — 2 байта длины + UTF-8, как DataOutputStream.writeUTF):
+#   magic "TAFM", int32 formatVersion
+#   utf modelVersion
+#   int32 featureCount, далее для каждого признака:
+#       utf name, byte categorical, [int32 classCount, utf class * classCount],
+#       byte hasDefault, [float64 default]    (значение признака, которого нет в форме, FORM_ABSENT_FEATURES)
+#   int32 labelCount, utf label * labelCount        (индекс класса модели -> строка оценки)
+#   int32 treeCount, далее для каждого дерева:
+#       int32 nodeCount
+#       int32 feature[nodeCount]     (-1 у листа)
+#       float64 threshold[nodeCount]
+#       int32 left[nodeCount], int32 right[nodeCount]   (индексы внутри дерева, -1 у листа)
+#       float64 value[leafCount * labelCount]           (доли классов в листьях, по порядку листьев)
+
+MAGIC = b'TAFM'
+FORMAT_VERSION = 2
+
+MODELS_DIR = os.path.join(os.path.dirname(os.path.abspath(__file__)), '..', 'models')
+DATASET_PATH = os.path.join(os.path.dirname(os.path.abspath(__file__)), '..', 'dataset', 'dataset.csv')
+
+
+def write_utf(out, text):
+    data = str(text).encode('utf-8')
+    out.write(struct.pack('>H', len(data)))
+    out.write(data)
+
+
+def write_int(out, value):
+    out.write(struct.pack('>i', int(value)))
+
+
+def write_array(out, fmt, values):
+    values = np.ascontiguousarray(values, dtype=fmt)
+    out.write(values.tobytes())
+
+
+def export_model(version, models_dir=MODELS_DIR):
+    version_dir = os.path.join(models_dir, version)
+    model, encoders = TechnoAssistant.open_model(
+        os.path.join(version_dir, f"model_RF_{version}.joblib"),
+        os.path.join(version_dir, f"encoders_RF_{version}.joblib")
+    )
+
+    features = list(model.feature_names_in_)
+    labels = encoders['estimation'].inverse_transform(model.classes_)
+    output_path = os.path.join(version_dir, f"model_RF_{version}.tamodel")
+
+    with open(output_path, 'wb') as out:
+        out.write(MAGIC)
+        write_int(out, FORMAT_VERSION)
+        write_utf(out, version)
+
+        write_int(out, len(features))
+        for name in features:
+            write_utf(out, name)
+            if name in encoders:
+                out.write(b'\x01')
+                classes = encoders[name].classes_
+                write_int(out, len(classes))
+                for value in classes:
+                    write_utf(out, value)
+            else:
+                out.write(b'\x00')
+
+            # остальные признаки обязательны: без них JavaUI, как и predict_loaded, сообщает об ошибке
+            if name in FORM_ABSENT_FEATURES:
+                out.write(b'\x01')
+                out.write(struct.pack('>d', float(FORM_ABSENT_FEATURES[name])))
+            else:
+                out.write(b'\x00')
+
+        write_int(out, len(labels))
+        for label in labels:
+            write_utf(out, label)
+
+        write_int(out, len(model.estimators_))
+        for estimator in model.estimators_:
+            tree = estimator.tree_
+            is_leaf = tree.children_left == -1
+
+            feature = np.where(is_leaf, -1, tree.feature)
+            value = tree.value[is_leaf][:, 0, :]
+            value = value / value.sum(axis=1, keepdims=True)
+
+            write_int(out, tree.node_count)
+            write_array(out, '>i4', feature)
+            write_array(out, '>f8', tree.threshold)
+            write_array(out, '>i4', tree.children_left)
+            write_array(out, '>i4', tree.children_right)
+            write_array(out, '>f8', value.ravel())
+
+    print(f"{output_path} успешно создан!")
+
+    export_predictions(version, model, encoders)
+    return output_path
+
+
+def export_predictions(version, model, encoders, dataset_path=DATASET_PATH):
+    """Эталонные предсказания Python по dataset.csv (по строке на запись) для проверки model.ForestCheck"""
+    df = pd.read_csv(dataset_path).drop(['link', 'general_score'], axis=1)
+    predictions = TechnoAssistant.predict_loaded(model, encoders, df)
+
+    output_path = os.path.join(MODELS_DIR, version, f"predictions_RF_{version}.txt")
+    with open(output_path, 'w', encoding='utf-8') as out:
+        for label in predictions:
+            out.write(f"{label}\n")
+
+    print(f"{output_path} успешно создан!")
+
+
+if __name__ == '__main__':
+    versions = sys.argv[1:] or sorted(
+        name for name in os.listdir(MODELS_DIR) if os.path.isdir(os.path.join(MODELS_DIR, name))
+    )
+    for model_version in versions:
+        export_model(model_version)
@@ -1,22 +1,32 @@
 import io
+import os
 import sys
 import json
 
 from trainingAI import TechnoAssistant
 
 sys.stdout = io.TextIOWrapper(sys.stdout.buffer, encoding='utf-8')
-sys.path.append(r'C:\Users\Dimylkin\MyProject\TechnoAssiatant\PythonAI\helpers')
 
-# Получаем аргументы из Java
-data_json = sys.argv[1]
+MODELS_DIR = os.path.join(os.path.dirname(os.path.abspath(__file__)), '..', 'models')
+DEFAULT_VERSION = 'v1.0.0'
+
+# Разовая оценка из командной строки: JSON запроса первым аргументом или в stdin,
+# версия модели берётся из поля "model" (по умолчанию v1.0.0)
+if len(sys.argv) > 1:
+    data_json = sys.argv[1]
+else:
+    data_json = io.TextIOWrapper(sys.stdin.buffer, encoding='utf-8').read()
 data = json.loads(data_json)
 
+version = data.get('model') or DEFAULT_VERSION
+version_dir = os.path.join(MODELS_DIR, version)
+
 # Вызываем метод
 result = TechnoAssistant.using_model(
     "single",
     data,
-    r"C:\Users\Dimylkin\MyProject\TechnoAssiatant\PythonAI\models\v1.0.0\model_RF_v1.0.0.joblib",
-    r"C:\Users\Dimylkin\MyProject\TechnoAssiatant\PythonAI\models\v1.0.0\encoders_RF_v1.0.0.joblib"
+    os.path.join(version_dir, f"model_RF_{version}.joblib"),
+    os.path.join(version_dir, f"encoders_RF_{version}.joblib")
 )
 
 # Возвращаем результат
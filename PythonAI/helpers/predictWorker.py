@@ -0,0 +1,104 @@
+import io
+import os
+import sys
+import json
+
+import pandas as pd
+
+from trainingAI import TechnoAssistant
+
+# Долгоживущий процесс для JavaUI: интерпретатор и модель загружаются один раз,
+# дальше каждый запрос — одна строка JSON в stdin, каждый ответ — одна строка JSON в stdout.
+sys.stdin = io.TextIOWrapper(sys.stdin.buffer, encoding='utf-8')
+sys.stdout = io.TextIOWrapper(sys.stdout.buffer, encoding='utf-8', line_buffering=True)
+
+MODELS_DIR = os.path.join(os.path.dirname(os.path.abspath(__file__)), '..', 'models')
+DEFAULT_VERSION = 'v1.0.0'
+
+
+class PredictWorker:
+    def __init__(self, models_dir):
+        self.models_dir = models_dir
+        self.models = {}
+
+    def get_model(self, version):
+        """Возвращает (model, encoders) из памяти, при первом обращении читает joblib с диска"""
+        if not version:
+            version = DEFAULT_VERSION
+
+        if version not in self.models:
+            version_dir = os.path.join(self.models_dir, version)
+            self.models[version] = TechnoAssistant.open_model(
+                os.path.join(version_dir, f"model_RF_{version}.joblib"),
+                os.path.join(version_dir, f"encoders_RF_{version}.joblib")
+            )
+        return self.models[version]
+
+    def predict(self, data):
+        model, encoders = self.get_model(data.get('model'))
+        df = pd.DataFrame([data])
+        return str(TechnoAssistant.predict_loaded(model, encoders, df)[0])
+
+    def predict_batch(self, items):
+        """Пакет запросов от микробатчера JavaUI: один DataFrame и один model.predict на версию модели"""
+        results = [None] * len(items)
+
+        by_version = {}
+        for index, data in enumerate(items):
+            by_version.setdefault(data.get('model') or DEFAULT_VERSION, []).append(index)
+
+        for version, indexes in by_version.items():
+            try:
+                model, encoders = self.get_model(version)
+                df = pd.DataFrame([items[i] for i in indexes])
+                labels = TechnoAssistant.predict_loaded(model, encoders, df)
+                for i, label in zip(indexes, labels):
+                    results[i] = {"ok": True, "result": str(label)}
+            except Exception:
+                # одна некорректная запись не должна ронять весь пакет — считаем по одной
+                for i in indexes:
+                    try:
+                        results[i] = {"ok": True, "result": self.predict(items[i])}
+                    except Exception as e:
+                        results[i] = {"ok": False, "error": str(e)}
+
+        return results
+
+    def handle(self, request):
+        request_type = request.get('type', 'predict')
+
+        if request_type == 'ping':
+            return {"ok": True, "result": "pong", "models": sorted(self.models.keys())}
+
+        if request_type == 'load':
+            self.get_model(request.get('model'))
+            return {"ok": True, "result": request.get('model') or DEFAULT_VERSION}
+
+        if request_type == 'predict':
+            return {"ok": True, "result": self.predict(request.get('data', {}))}
+
+        if request_type == 'batch':
+            return {"ok": True, "result": self.predict_batch(request.get('items', []))}
+
+        return {"ok": False, "error": f"Неизвестный тип запроса: {request_type}"}
+
+    def run(self):
+        for line in sys.stdin:
+            line = line.strip()
+            if not line:
+                continue
+
+            request_id = None
+            try:
+                request = json.loads(line)
+                request_id = request.get('id')
+                response = self.handle(request)
+            except Exception as e:
+                response = {"ok": False, "error": str(e)}
+
+            response['id'] = request_id
+            sys.stdout.write(json.dumps(response, ensure_ascii=False) + "\n")
+
+
+if __name__ == '__main__':
+    PredictWorker(MODELS_DIR).run()
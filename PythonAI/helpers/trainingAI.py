@@ -8,6 +8,12 @@ from sklearn.ensemble import RandomForestClassifier
 from sklearn.metrics import accuracy_score, classification_report, confusion_matrix
 from sklearn.preprocessing import LabelEncoder
 
+# Признаки набора данных, которых нет в форме JavaUI. Модель обучена с ними, поэтому при оценке
+# из формы подставляется значение по умолчанию; exportModel.py записывает эти значения в .tamodel,
+# и FeatureEncoder JavaUI подставляет те же. Любой другой отсутствующий признак — ошибка, а не
+# молчаливый ноль.
+FORM_ABSENT_FEATURES = {'price': 0}
+
 
 class TechnoAssistant:
     @staticmethod
@@ -42,30 +48,38 @@ class TechnoAssistant:
 
     @staticmethod
     def using_model(type_data, dataset, path_to_model, path_to_encoders):
+        model, encoders = TechnoAssistant.open_model(path_to_model, path_to_encoders)
+
         if type_data == "test":
             df = pd.read_csv(dataset).drop(['link', 'general_score'], axis=1)
-            model, encoders = TechnoAssistant.open_model(path_to_model, path_to_encoders)
-
-            for column_name in df.columns:
-                if column_name in encoders:
-                    known_classes = encoders[column_name].classes_
-                    df[column_name] = df[column_name].astype(str).apply(
-                        lambda x: x if x in known_classes else known_classes[0]
-                    )
-                    df[column_name] = encoders[column_name].transform(df[column_name])
         else:
             df = pd.DataFrame([dataset])
-            model, encoders = TechnoAssistant.open_model(path_to_model, path_to_encoders)
 
-            for column_name in df.columns:
-                if column_name in encoders and column_name != 'estimation':
-                    known_classes = encoders[column_name].classes_
-                    df[column_name] = df[column_name].astype(str).apply(
-                        lambda x: x if x in known_classes else known_classes[0]
-                    )
-                    df[column_name] = encoders[column_name].transform(df[column_name])
+        return TechnoAssistant.predict_loaded(model, encoders, df)
+
+    @staticmethod
+    def predict_loaded(model, encoders, df):
+        """Предсказание уже загруженной моделью (без повторного чтения joblib с диска)"""
+        for column_name in df.columns:
+            if column_name in encoders and column_name != 'estimation':
+                known_classes = encoders[column_name].classes_
+                df[column_name] = df[column_name].astype(str).apply(
+                    lambda x: x if x in known_classes else known_classes[0]
+                )
+                df[column_name] = encoders[column_name].transform(df[column_name])
+
+        # Порядок и набор колонок как при обучении; лишние (model, estimation) не передаём
+        if hasattr(model, 'feature_names_in_'):
+            features = list(model.feature_names_in_)
+            for column_name, default in FORM_ABSENT_FEATURES.items():
+                if column_name in features and column_name not in df.columns:
+                    df[column_name] = default
+
+            missing = [column_name for column_name in features if column_name not in df.columns]
+            if missing:
+                raise ValueError(f"Нет признаков: {', '.join(missing)}")
+            df = df[features]
 
-        model, encoders = TechnoAssistant.open_model(path_to_model, path_to_encoders)
         prediction = model.predict(df)
         return encoders['estimation'].inverse_transform(prediction)
 